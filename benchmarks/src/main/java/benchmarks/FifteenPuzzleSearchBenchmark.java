@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the algorithms that can solve the 15-puzzle solving each group of
+ * 15-puzzles in the corpus, which are grouped by the number of moves they take
+ * to solve. The uninformed searches would run out of memory on the deeper
+ * groups, so they are left out, and the informed searches use the pattern
+ * databases, which are built outside of the measurement if they are missing.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FifteenPuzzleSearchBenchmark {
+	/**
+	 * The number of moves the puzzles in the group take to solve.
+	 */
+	@Param({ "20", "30", "40", "50" })
+	public String depth;
+
+	/**
+	 * The algorithm, as taken by <code>Solve</code>.
+	 */
+	@Param({ "astar3", "idastar", "biastar", "hdastar", "wastar" })
+	public String algorithm;
+
+	/**
+	 * The board of the 15-puzzle.
+	 */
+	private Object board;
+	/**
+	 * The start states of the puzzles in the group, as the tiles in row-major
+	 * order.
+	 */
+	private List<int[]> puzzles;
+	/**
+	 * The target state every puzzle is solved to, as its tiles.
+	 */
+	private int[] target;
+
+	/**
+	 * Reads the group of puzzles, and solves them once so that any tables the
+	 * algorithm needs are built outside of the measurement.
+	 */
+	@Setup
+	public void setUp() {
+		board = Puzzle.newBoard(4, 4);
+		puzzles = Puzzle.corpus("4x4-" + depth);
+		target = Puzzle.canonicalTarget(4, 4);
+		solveAll(null);
+	}
+
+	/**
+	 * Solves every puzzle in the group.
+	 */
+	@Benchmark
+	public void findPath(Blackhole blackhole) {
+		solveAll(blackhole);
+	}
+
+	/**
+	 * Solves every puzzle in the group with a new solver, failing if any of
+	 * them isn't solved.
+	 *
+	 * @param blackhole
+	 *            Where the paths are sent so they aren't optimised away, or
+	 *            null to throw them away.
+	 */
+	private void solveAll(Blackhole blackhole) {
+		Object solver = Puzzle.newSolver(algorithm, "pdb");
+		for (int[] puzzle : puzzles) {
+			Object path = Puzzle.solve(solver,
+					Puzzle.createState(board, puzzle),
+					Puzzle.createState(board, target));
+			if (path == null) {
+				throw new IllegalStateException(algorithm
+						+ " found no path for a puzzle in 4x4-" + depth);
+			}
+			if (blackhole != null) {
+				blackhole.consume(path);
+			}
+		}
+	}
+}
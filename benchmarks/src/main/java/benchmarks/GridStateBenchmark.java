@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations every search carries out on each state it reaches:
+ * generating its children and comparing it with other states.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridStateBenchmark {
+	/**
+	 * The group of the corpus the state is taken from.
+	 */
+	@Param({ "3x3-16", "4x4-30" })
+	public String group;
+
+	/**
+	 * The first state in the group.
+	 */
+	private Object state;
+	/**
+	 * A copy of the state, equal to it but a different instance.
+	 */
+	private Object equalState;
+	/**
+	 * A neighbour of the state.
+	 */
+	private Object differentState;
+
+	/**
+	 * Creates the state, its copy and its neighbour.
+	 */
+	@Setup
+	public void setUp() {
+		String[] size = group.substring(0, group.indexOf('-')).split("x");
+		Object board = Puzzle.newBoard(Integer.parseInt(size[0]),
+				Integer.parseInt(size[1]));
+		state = Puzzle.createState(board, Puzzle.corpus(group).get(0));
+		equalState = Puzzle.copy(state);
+		// A neighbour differs in just two cells, the hardest case to tell
+		// apart from an equal state.
+		Puzzle.generateChildren(equalState);
+		differentState = Puzzle.getChildren(equalState).get(0);
+		Puzzle.getChildren(equalState).clear();
+	}
+
+	/**
+	 * Generates the state's children again.
+	 */
+	@Benchmark
+	public List<Object> generateChildren() {
+		List<Object> children = Puzzle.getChildren(state);
+		children.clear();
+		Puzzle.generateChildren(state);
+		return children;
+	}
+
+	/**
+	 * Compares the state with its copy.
+	 */
+	@Benchmark
+	public boolean equalsEqual() {
+		return state.equals(equalState);
+	}
+
+	/**
+	 * Compares the state with its neighbour.
+	 */
+	@Benchmark
+	public boolean equalsDifferent() {
+		return state.equals(differentState);
+	}
+
+	/**
+	 * Hashes the state.
+	 */
+	@Benchmark
+	public int hashCodeOf() {
+		return state.hashCode();
+	}
+}
@@ -0,0 +1,138 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each heuristic, both estimating a state from scratch and updating
+ * the estimate of its parent after one move, over every state in a group of
+ * the corpus and one child of each.
+ *
+ * The pattern databases are built in to the <code>pdb</code> directory (or
+ * the one named by the <code>puzzle.pdb.dir</code> system property) the first
+ * time they are needed, which takes about a minute for the 15-puzzle.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeuristicBenchmark {
+	/**
+	 * The group of the corpus the states are taken from.
+	 */
+	@Param({ "3x3-16", "4x4-30" })
+	public String group;
+
+	/**
+	 * The name of the heuristic, as taken by <code>Heuristic.forName</code>.
+	 */
+	@Param({ "hamming", "manhattan", "linear", "walking", "pdb" })
+	public String heuristic;
+
+	/**
+	 * The heuristic, aimed at the canonical target.
+	 */
+	private Object estimator;
+	/**
+	 * The states in the group.
+	 */
+	private Object[] states;
+	/**
+	 * A neighbour of each state.
+	 */
+	private Object[] children;
+	/**
+	 * The estimate for each state.
+	 */
+	private int[] parentEstimates;
+	/**
+	 * The cell the tile that moved to get to each neighbour came from, where
+	 * the gap now is.
+	 */
+	private int[] froms;
+	/**
+	 * The cell that tile moved to, where the gap was.
+	 */
+	private int[] tos;
+
+	/**
+	 * Creates the heuristic, the states and a neighbour of each.
+	 */
+	@Setup
+	public void setUp() {
+		String[] size = group.substring(0, group.indexOf('-')).split("x");
+		int rows = Integer.parseInt(size[0]);
+		int columns = Integer.parseInt(size[1]);
+		Object board = Puzzle.newBoard(rows, columns);
+		estimator = Puzzle.heuristic(heuristic,
+				Puzzle.createState(board, Puzzle.canonicalTarget(rows, columns)));
+
+		List<int[]> corpus = Puzzle.corpus(group);
+		states = new Object[corpus.size()];
+		children = new Object[corpus.size()];
+		parentEstimates = new int[corpus.size()];
+		froms = new int[corpus.size()];
+		tos = new int[corpus.size()];
+		List<Object> generated = new ArrayList<Object>();
+		for (int i = 0; i < states.length; i++) {
+			states[i] = Puzzle.createState(board, corpus.get(i));
+			parentEstimates[i] = Puzzle.estimate(estimator, states[i]);
+			generated.clear();
+			for (int direction = 0; direction < 4; direction++) {
+				if (Puzzle.canMove(states[i], direction)) {
+					Object child = Puzzle.copy(states[i]);
+					Puzzle.moveZero(child, direction);
+					generated.add(child);
+				}
+			}
+			// Spreads the moves over the directions rather than always
+			// taking the first.
+			children[i] = generated.get(i % generated.size());
+			froms[i] = Puzzle.getBlankIndex(children[i]);
+			tos[i] = Puzzle.getBlankIndex(states[i]);
+		}
+	}
+
+	/**
+	 * Estimates every state from scratch.
+	 */
+	@Benchmark
+	public int estimate() {
+		int total = 0;
+		for (Object state : states) {
+			total += Puzzle.estimate(estimator, state);
+		}
+		return total;
+	}
+
+	/**
+	 * Estimates every neighbour from its parent's estimate.
+	 */
+	@Benchmark
+	public int estimateAfterMove() {
+		int total = 0;
+		for (int i = 0; i < children.length; i++) {
+			total += Puzzle.estimateAfterMove(estimator, parentEstimates[i],
+					children[i], froms[i], tos[i]);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,369 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calls in to the solver for the benchmarks.
+ *
+ * The solver's classes are in the default package, which can't be imported
+ * from a named package, and JMH won't run benchmarks that are in the default
+ * package themselves. So each method the benchmarks use is looked up once as
+ * a method handle held in a static final field, which the JIT compiles down
+ * to a direct call, and the solver's objects are passed around as
+ * <code>Object</code>.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+final class Puzzle {
+	/**
+	 * The <code>Board</code> constructor.
+	 */
+	private static final MethodHandle NEW_BOARD;
+	/**
+	 * <code>Board.createState</code>.
+	 */
+	private static final MethodHandle CREATE_STATE;
+	/**
+	 * <code>GridState.copy</code>.
+	 */
+	private static final MethodHandle COPY;
+	/**
+	 * <code>GridState.generateChildren</code>.
+	 */
+	private static final MethodHandle GENERATE_CHILDREN;
+	/**
+	 * <code>GridState.getChildren</code>.
+	 */
+	private static final MethodHandle GET_CHILDREN;
+	/**
+	 * <code>GridState.getBlankIndex</code>.
+	 */
+	private static final MethodHandle GET_BLANK_INDEX;
+	/**
+	 * <code>GridState.canMove</code>.
+	 */
+	private static final MethodHandle CAN_MOVE;
+	/**
+	 * <code>GridState.moveZero</code>.
+	 */
+	private static final MethodHandle MOVE_ZERO;
+	/**
+	 * <code>Heuristic.forName</code>.
+	 */
+	private static final MethodHandle HEURISTIC_FOR_NAME;
+	/**
+	 * <code>Heuristic.estimate</code>.
+	 */
+	private static final MethodHandle ESTIMATE;
+	/**
+	 * <code>Heuristic.estimateAfterMove</code>.
+	 */
+	private static final MethodHandle ESTIMATE_AFTER_MOVE;
+	/**
+	 * The <code>Solver</code> constructor.
+	 */
+	private static final MethodHandle NEW_SOLVER;
+	/**
+	 * <code>Solver.solve</code>, without limits.
+	 */
+	private static final MethodHandle SOLVE;
+	/**
+	 * <code>SearchResult.getPath</code>.
+	 */
+	private static final MethodHandle GET_PATH;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> board = Class.forName("Board");
+			Class<?> state = Class.forName("GridState");
+			Class<?> heuristic = Class.forName("Heuristic");
+			Class<?> solver = Class.forName("Solver");
+			Class<?> result = Class.forName("SearchResult");
+
+			NEW_BOARD = erase(lookup.findConstructor(board,
+					MethodType.methodType(void.class, int.class, int.class)));
+			CREATE_STATE = erase(lookup.findVirtual(board, "createState",
+					MethodType.methodType(state, int[].class)));
+			COPY = erase(lookup.findVirtual(state, "copy",
+					MethodType.methodType(state)));
+			GENERATE_CHILDREN = erase(lookup.findVirtual(state,
+					"generateChildren", MethodType.methodType(void.class)));
+			GET_CHILDREN = erase(lookup.findVirtual(state, "getChildren",
+					MethodType.methodType(ArrayList.class)));
+			GET_BLANK_INDEX = erase(lookup.findVirtual(state, "getBlankIndex",
+					MethodType.methodType(int.class)));
+			CAN_MOVE = erase(lookup.findVirtual(state, "canMove",
+					MethodType.methodType(boolean.class, int.class)));
+			MOVE_ZERO = erase(lookup.findVirtual(state, "moveZero",
+					MethodType.methodType(void.class, int.class)));
+			HEURISTIC_FOR_NAME = erase(lookup.findStatic(heuristic, "forName",
+					MethodType.methodType(heuristic, String.class, state)));
+			ESTIMATE = erase(lookup.findVirtual(heuristic, "estimate",
+					MethodType.methodType(int.class, state)));
+			ESTIMATE_AFTER_MOVE = erase(lookup.findVirtual(heuristic,
+					"estimateAfterMove", MethodType.methodType(int.class,
+							int.class, state, int.class, int.class)));
+			NEW_SOLVER = erase(lookup.findConstructor(solver, MethodType
+					.methodType(void.class, String.class, String.class)));
+			SOLVE = erase(lookup.findVirtual(solver, "solve",
+					MethodType.methodType(result, state, state)));
+			GET_PATH = erase(lookup.findVirtual(result, "getPath",
+					MethodType.methodType(Class.forName("Path"))));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Holds only static methods, so is never created.
+	 */
+	private Puzzle() {
+	}
+
+	/**
+	 * Replaces every solver class in a method handle's type, and the list of
+	 * children, with <code>Object</code>, so it can be called from here.
+	 */
+	private static MethodHandle erase(MethodHandle handle) {
+		MethodType type = handle.type();
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (isSolverClass(type.parameterType(i))) {
+				type = type.changeParameterType(i, Object.class);
+			}
+		}
+		if (isSolverClass(type.returnType())
+				|| type.returnType() == ArrayList.class) {
+			type = type.changeReturnType(Object.class);
+		}
+		return handle.asType(type);
+	}
+
+	/**
+	 * Determines whether a class is one of the solver's, which are all in the
+	 * default package.
+	 */
+	private static boolean isSolverClass(Class<?> type) {
+		return !type.isPrimitive() && !type.isArray()
+				&& type.getPackageName().isEmpty();
+	}
+
+	/**
+	 * Calls the <code>Board</code> constructor.
+	 */
+	static Object newBoard(int rows, int columns) {
+		try {
+			return (Object) NEW_BOARD.invokeExact(rows, columns);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>Board.createState</code>.
+	 */
+	static Object createState(Object board, int[] cells) {
+		try {
+			return (Object) CREATE_STATE.invokeExact(board, cells);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.copy</code>.
+	 */
+	static Object copy(Object state) {
+		try {
+			return (Object) COPY.invokeExact(state);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.generateChildren</code>.
+	 */
+	static void generateChildren(Object state) {
+		try {
+			GENERATE_CHILDREN.invokeExact(state);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.getChildren</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Object> getChildren(Object state) {
+		try {
+			return (List<Object>) (Object) GET_CHILDREN.invokeExact(state);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.getBlankIndex</code>.
+	 */
+	static int getBlankIndex(Object state) {
+		try {
+			return (int) GET_BLANK_INDEX.invokeExact(state);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.canMove</code>.
+	 */
+	static boolean canMove(Object state, int direction) {
+		try {
+			return (boolean) CAN_MOVE.invokeExact(state, direction);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>GridState.moveZero</code>.
+	 */
+	static void moveZero(Object state, int direction) {
+		try {
+			MOVE_ZERO.invokeExact(state, direction);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>Heuristic.forName</code>.
+	 */
+	static Object heuristic(String name, Object target) {
+		try {
+			return (Object) HEURISTIC_FOR_NAME.invokeExact(name, target);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>Heuristic.estimate</code>.
+	 */
+	static int estimate(Object heuristic, Object state) {
+		try {
+			return (int) ESTIMATE.invokeExact(heuristic, state);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>Heuristic.estimateAfterMove</code>.
+	 */
+	static int estimateAfterMove(Object heuristic, int parentEstimate,
+			Object state, int from, int to) {
+		try {
+			return (int) ESTIMATE_AFTER_MOVE.invokeExact(heuristic,
+					parentEstimate, state, from, to);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls the <code>Solver</code> constructor.
+	 */
+	static Object newSolver(String algorithm, String heuristic) {
+		try {
+			return (Object) NEW_SOLVER.invokeExact(algorithm, heuristic);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Calls <code>Solver.solve</code>, returning the path it found or null.
+	 */
+	static Object solve(Object solver, Object start, Object target) {
+		try {
+			Object result = (Object) SOLVE.invokeExact(solver, start, target);
+			return (Object) GET_PATH.invokeExact(result);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Returns the canonical target for a board: the tiles in order followed by
+	 * the gap.
+	 */
+	static int[] canonicalTarget(int rows, int columns) {
+		int[] cells = new int[rows * columns];
+		for (int i = 0; i < cells.length - 1; i++) {
+			cells[i] = i + 1;
+		}
+		return cells;
+	}
+
+	/**
+	 * Reads a group of puzzles from the corpus, each as the tiles in
+	 * row-major order.
+	 *
+	 * @param name
+	 *            The name of the group, such as "3x3-16".
+	 */
+	static List<int[]> corpus(String name) {
+		InputStream input = Puzzle.class.getResourceAsStream("/corpus/"
+				+ name + ".txt");
+		if (input == null) {
+			throw new IllegalArgumentException("No corpus named " + name);
+		}
+		List<int[]> puzzles = new ArrayList<int[]>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				input, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] tiles = line.split(",");
+				int[] cells = new int[tiles.length];
+				for (int i = 0; i < cells.length; i++) {
+					cells[i] = Integer.parseInt(tiles[i].trim());
+				}
+				puzzles.add(cells);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return puzzles;
+	}
+
+	/**
+	 * Passes on an exception thrown through a method handle unchanged if it
+	 * is unchecked.
+	 */
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new IllegalStateException(e);
+	}
+}
@@ -1,54 +1,50 @@
-import java.util.ArrayList;
-import java.util.PriorityQueue;
-
 /**
  * The class that is used to hold the data structures and behaviours to carry
  * out the A Star (A*) search algorithm on the puzzle to be solved, using the
  * heuristic choice made by the user the command line arguments.
  * 
+ * The search can also be run as weighted A*, which orders the states by
+ * g + w * h for a weight w of at least 1. The larger the weight, the more the
+ * search trusts the heuristic and the fewer states it expands, and the path it
+ * finds is at most w times as long as the shortest one. The weight is held as
+ * a fraction, so that the costs stay whole numbers for the open list.
+ * 
  * @author Dale Peters (dmp9@aber.ac.uk)
  */
 public class AStarSearch {
 	/**
 	 * Keeps track of all the states that have been visited and worked on.
 	 */
-	private ArrayList<GridState> closed = new ArrayList<GridState>();
+	private ClosedSet closed;
 	/**
-	 * Keeps track of which state the algorithm needs to work on next. When an
-	 * element is added to it, it is automatically sorted according to the cost
-	 * of the particular <code>GridState</code> object.
+	 * Keeps track of which state the algorithm needs to work on next. The
+	 * states are bucketed by cost so the cheapest can always be taken next and
+	 * the cost of a state already in it can be lowered in place.
 	 */
-	private PriorityQueue<GridState> priorityQueue = new PriorityQueue<GridState>();
+	private OpenList openList = new OpenList();
 
 	/**
-	 * Keeps a track of the number of nodes expanded.
+	 * The statistics kept while searching.
 	 */
-	private int nodesExpanded = 0;
-
+	private SearchStats stats;
 	/**
-	 * Returns the number of nodes that have been expanded.
-	 * 
-	 * @return The number of nodes that have been expanded.
+	 * The weight's numerator, by which the estimate is multiplied.
 	 */
-	public int getNodesExpanded() {
-		return nodesExpanded;
-	}
+	private int weightNumerator = 1;
+	/**
+	 * The weight's denominator, by which the cost to get to a state is
+	 * multiplied instead of dividing the weighted estimate.
+	 */
+	private int weightDenominator = 1;
 
 	/**
 	 * Carries out the A Star (A*) search algorithm based on the heuristic
 	 * chosen by the user in the command line arguments in order to attempt to
 	 * find the shortest path from the Initial State to the Target State.
 	 * 
-	 * If the third argument passed in to this method is "manhattan", it will
-	 * use the Manhattan Distance heuristic (the sum of the distances each tile
-	 * is away from where it should be, as defined by the target state) to
-	 * attempt to find a path from the start state to the target state.
-	 * 
-	 * If the third argument passed in to this method is "hamming", it will use
-	 * the Hamming Distance heuristic (the number of tiles not in the place
-	 * where they should be, according to the target state) to attempt to find a
-	 * path from the start state to the target state.
-	 * 
+	 * The third argument names the heuristic; see <code>Heuristic.forName</code>
+	 * for the names it accepts.
+	 *
 	 * This method is based on the pseudo code found at
 	 * http://en.wikipedia.org/wiki/A*_search_algorithm
 	 * 
@@ -62,144 +58,214 @@ public class AStarSearch {
 	 *            A description of the heuristic the user wishes to use to solve
 	 *            the problem.
 	 * @return The path the algorithm generated from the starting state to the
-	 *         goal state. Returns null if the algorithm failed.
+	 *         goal state, or no path if the algorithm failed, with the
+	 *         statistics of the search.
 	 */
-	public Path findPath(GridState startState, GridState targetState,
+	public SearchResult findPath(GridState startState, GridState targetState,
 			String heuristic) {
+		return findPath(startState, targetState, heuristic, 1);
+	}
 
-		startState.setCostToGetToState(0);
-		if (heuristic.equals("hamming")) {
-			startState.setPredictedCostToTarget(calculateHammingDistance(
-					startState, targetState));
-		}
-		if (heuristic.equals("manhattan")) {
-			startState.setPredictedCostToTarget(calculateManhattanDistance(
-					startState, targetState));
-		}
-		startState.setCost(startState.getCostToGetToState()
-				+ startState.getPredictedCostToTarget());
+	/**
+	 * Carries out weighted A*, which finds a path no more than the given
+	 * number of times as long as the shortest path, usually expanding far
+	 * fewer states than A* does to find the shortest.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            A description of the heuristic the user wishes to use to solve
+	 *            the problem.
+	 * @param weight
+	 *            The weight on the heuristic, at least 1. It is rounded to
+	 *            three decimal places.
+	 * @return The path the algorithm generated from the starting state to the
+	 *         goal state, or no path if the algorithm failed, with the
+	 *         statistics of the search and the weight as its bound.
+	 * @throws IllegalArgumentException
+	 *             if the weight is less than 1.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, double weight) {
+		return findPath(startState, targetState, heuristic, weight,
+				new SearchLimits());
+	}
 
-		priorityQueue.add(startState);
+	/**
+	 * Carries out weighted A*, stopping early if it reaches one of its limits.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve.
+	 * @param heuristic
+	 *            A description of the heuristic the user wishes to use to solve
+	 *            the problem.
+	 * @param weight
+	 *            The weight on the heuristic, at least 1, or 1 for A*.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return The path the algorithm generated from the starting state to the
+	 *         goal state, or no path if the algorithm failed, with the
+	 *         statistics of the search and the weight as its bound. If the
+	 *         search was stopped, the partial path leads to the state with
+	 *         the lowest estimate it reached.
+	 * @throws IllegalArgumentException
+	 *             if the weight is less than 1.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, double weight, SearchLimits limits) {
+		int[] fraction = weightAsFraction(weight);
+		weightNumerator = fraction[0];
+		weightDenominator = fraction[1];
+		double bound = (double) weightNumerator / weightDenominator;
+		stats = new SearchStats();
+		Heuristic estimator = Heuristic.forName(heuristic, targetState);
+		closed = new ClosedSet(startState.getBoard(), true);
 
-		while (!priorityQueue.isEmpty()) {
-			GridState current = priorityQueue.poll();
+		// Searches from a copy, so that the caller's state isn't linked to
+		// the states the search reaches.
+		GridState start = startState.copy();
+		start.setCostToGetToState(0);
+		start.setPredictedCostToTarget(estimator.estimate(start));
+		start.setCost(cost(start.getCostToGetToState(),
+				start.getPredictedCostToTarget()));
 
-			if (targetState.equals(current)) {
-				System.out.println("TARGET STATE REACHED\n");
-				System.out.println("This is the path it took:");
+		openList.add(start);
+		GridState best = start;
+		stats.startSearch();
 
+		while (!openList.isEmpty()) {
+			SearchResult.Status stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				stats.startPath();
+				Path partial = Path.fromParents(best);
+				release();
+				stats.finish();
+				return new SearchResult(stop, partial,
+						best.getPredictedCostToTarget(), stats);
+			}
+			GridState current = openList.poll();
+
+			if (targetState.equals(current)) {
+				stats.startPath();
 				// Traverses backwards to work out the path the algorithm took
-				Path path = new Path();
-				while (current.getParentState() != null) {
-					path.addToStart(current);
-					current = current.getParentState();
-				}
-				return path;
+				Path path = Path.fromParents(current);
+				release();
+				stats.finish();
+				return new SearchResult(path, stats, bound);
 			}
 
-			closed.add(current);
+			closed.add(current, current.getCostToGetToState());
 
 			current.generateChildren();
+			stats.addExpanded();
 			for (GridState child : current.getChildren()) {
-				nodesExpanded++;
-				int provisionalCostTotal = 0;
-				int provisionalCostToGetToState = 0;
-
-				// If the heuristic selected is the Hamming Distance heuristic
-				if (heuristic.equals("hamming")) {
-					provisionalCostToGetToState = current.getCostToGetToState()
-							+ calculateHammingDistance(child, current);
-					provisionalCostTotal = provisionalCostToGetToState
-							+ calculateHammingDistance(child, targetState);
-				}
-
-				// If the heuristic selected is the Manhattan Distance heuristic
-				else if (heuristic.equals("manhattan")) {
-					provisionalCostToGetToState = current.getCostToGetToState()
-							+ calculateManhattanDistance(child, current);
-					provisionalCostTotal = provisionalCostToGetToState
-							+ calculateManhattanDistance(child, targetState);
-				}
+				stats.addGenerated();
+				// Every move slides a single tile, so costs one, and the tile
+				// moved from where the child's gap is to where the current
+				// state's gap is.
+				int provisionalCostToGetToState = current
+						.getCostToGetToState() + 1;
 
-				if (closed.contains(child)
-						&& provisionalCostTotal >= child.getCost()) {
+				// A state that has already been worked on is only looked at
+				// again if a cheaper way to get to it has been found.
+				boolean wasClosed = closed.contains(child);
+				if (wasClosed
+						&& provisionalCostToGetToState >= closed
+								.getCost(child)) {
+					stats.addDuplicate();
 					continue;
 				}
 
-				if (!priorityQueue.contains(child)
-						|| provisionalCostTotal < child.getCost()) {
+				GridState openState = openList.get(child);
+				if (openState == null) {
+					if (wasClosed) {
+						stats.addReopened();
+					}
 					child.setCostToGetToState(provisionalCostToGetToState);
-					child.setCost(provisionalCostTotal);
-					if (!priorityQueue.contains(child)) {
-						priorityQueue.add(child);
+					child.setPredictedCostToTarget(estimator.estimateAfterMove(
+							current.getPredictedCostToTarget(), child,
+							child.getBlankIndex(), current.getBlankIndex()));
+					child.setCost(cost(provisionalCostToGetToState,
+							child.getPredictedCostToTarget()));
+					openList.add(child);
+					if (child.getPredictedCostToTarget() < best
+							.getPredictedCostToTarget()) {
+						best = child;
 					}
+				} else if (provisionalCostToGetToState < openState
+						.getCostToGetToState()) {
+					openState.setParentState(current);
+					openList.decreaseKey(openState,
+							provisionalCostToGetToState, cost(
+									provisionalCostToGetToState,
+									openState.getPredictedCostToTarget()));
+				} else {
+					stats.addDuplicate();
 				}
 			}
+			stats.updateOpenSize(openList.size());
+			stats.updateClosedSize(closed.size());
 		}
-		return null; // Failed to make a path.
+		// Failed to make a path.
+		stats.startPath();
+		release();
+		stats.finish();
+		return new SearchResult(null, stats, bound);
 	}
 
 	/**
-	 * Calculates the number of tiles in the particular state that are out of
-	 * place from the target state. Used in the case that the user chose to ask
-	 * the software to solve the problem using the Hamming Distance heuristic.
+	 * Works out the total cost a state is ordered by in the open list, the
+	 * weighted sum of its costs scaled up to a whole number.
 	 * 
-	 * @param current
-	 *            The state to calculate the number of misplaced tiles for.
-	 * @param target
-	 *            The targetState the algorithm is trying to find a path to get
-	 *            to.
-	 * @return The number of misplaced tiles in the <code>current</code> state.
+	 * @param costToGetToState
+	 *            The cost to get to the state, g.
+	 * @param predictedCostToTarget
+	 *            The estimate of the cost to get to the target, h.
+	 * @return the weighted cost.
 	 */
-	public int calculateHammingDistance(GridState current, GridState target) {
-		int tilesOutOfPlace = 0;
-		for (int i = 0; i < 3; i++) {
-			for (int j = 0; j < 3; j++) {
-				if (current.getGrid()[i][j] != target.getGrid()[i][j]) {
-					tilesOutOfPlace++;
-				}
-			}
-		}
-		return tilesOutOfPlace;
+	private int cost(int costToGetToState, int predictedCostToTarget) {
+		return weightDenominator * costToGetToState + weightNumerator
+				* predictedCostToTarget;
 	}
 
 	/**
-	 * Calculates the sum of the distances each tile is away from where it
-	 * should be, as defined by the target state passed in. Used in the case
-	 * that the user chose to ask the software to solve the problem using the
-	 * Manhattan Distance heuristic.
+	 * Turns a weight in to a fraction in its lowest terms, to three decimal
+	 * places, so that weighted costs can be worked out in whole numbers.
 	 * 
-	 * @param current
-	 *            The state to calculate the Manhattan Distance for.
-	 * @param target
-	 *            The targetState the algorithm is trying to find a path to get
-	 *            to.
-	 * @return The sum of the distances each tile is away from where it should
-	 *         be.
+	 * @param weight
+	 *            The weight, at least 1.
+	 * @return the numerator and denominator.
+	 * @throws IllegalArgumentException
+	 *             if the weight is less than 1.
 	 */
-	public int calculateManhattanDistance(GridState current, GridState target) {
-		int manhattanDistance = 0;
-		for (int check = 1; check < 9; check++) {
-			for (int i = 0; i < 3; i++) {
-				for (int j = 0; j < 3; j++) {
-					// Converts check to character
-					char checkAsChar = Character.forDigit(check, 10);
-					int targetRow = 0, targetColumn = 0;
-					int actualRow = 0, actualColumn = 0;
-					if (target.getGrid()[i][j] == checkAsChar) {
-						targetRow = i;
-						targetColumn = j;
-					}
-					if (current.getGrid()[i][j] == checkAsChar) {
-						actualRow = i;
-						actualColumn = j;
-					}
-					int distanceRows = Math.abs(actualRow - targetRow);
-					int distanceColumns = Math.abs(actualColumn - targetColumn);
-					manhattanDistance += (distanceColumns + distanceRows);
-				}
-			}
+	static int[] weightAsFraction(double weight) {
+		int denominator = 1000;
+		int numerator = (int) Math.round(weight * denominator);
+		if (!(weight >= 1) || numerator > 1000000) {
+			throw new IllegalArgumentException(
+					"The weight must be between 1 and 1000: " + weight);
 		}
-		return manhattanDistance;
+		int a = numerator;
+		int b = denominator;
+		while (b != 0) {
+			int remainder = a % b;
+			a = b;
+			b = remainder;
+		}
+		return new int[] { numerator / a, denominator / a };
+	}
+
+	/**
+	 * Lets go of the states the search reached, so that they can be garbage
+	 * collected as soon as the path has been worked out.
+	 */
+	private void release() {
+		closed = null;
+		openList = new OpenList();
 	}
 }
@@ -0,0 +1,440 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out Anytime Repairing A* (ARA*), which finds a path quickly with weighted A*
+ * and then keeps finding shorter ones with smaller weights for as long as it
+ * is given.
+ *
+ * Each pass expands states in order of g + w * h until no state in the open
+ * list could lead to a path cheaper, by that measure, than the best one found
+ * so far. A state whose cost to get to it is lowered after it has been
+ * expanded in the current pass isn't expanded again in that pass, but put
+ * aside as inconsistent; at the start of the next pass, with a smaller weight,
+ * it goes back in to the open list along with every state still there, so
+ * each pass reuses the work of those before it rather than starting again.
+ *
+ * After each pass the path is known to be at most min(w, G / F) times as long
+ * as the shortest path, where G is its length and F the lowest g + h of any
+ * state in the open list or put aside, which no path can be shorter than.
+ * The search stops once that bound reaches 1, the weight reaches 1 or the time
+ * limit runs out, and returns the best path with its bound. The time limit
+ * only stops the passes after the first, so a path is always found if there
+ * is one, unless the search is given <code>SearchLimits</code> that stop it
+ * first.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class AnytimeAStarSearch {
+	/**
+	 * The weight of the first pass unless the <code>puzzle.ara.weight</code>
+	 * system property gives another.
+	 */
+	public static final double DEFAULT_WEIGHT = 3;
+	/**
+	 * The amount the weight is lowered by between passes unless the
+	 * <code>puzzle.ara.step</code> system property gives another.
+	 */
+	public static final double DEFAULT_STEP = 0.5;
+	/**
+	 * The time in milliseconds the search may spend improving its path unless
+	 * the <code>puzzle.ara.time</code> system property gives another.
+	 */
+	public static final long DEFAULT_TIME_LIMIT = 1000;
+	/**
+	 * The number of states expanded between looks at the clock.
+	 */
+	private static final int CLOCK_INTERVAL = 256;
+	/**
+	 * The weight of the first pass.
+	 */
+	private final double initialWeight;
+	/**
+	 * The amount the weight is lowered by between passes.
+	 */
+	private final double step;
+	/**
+	 * The time the search may spend improving its path, in nanoseconds.
+	 */
+	private final long timeLimit;
+	/**
+	 * Maps every state reached to the instance of it holding its costs and
+	 * parent.
+	 */
+	private HashMap<GridState, GridState> reached;
+	/**
+	 * The states waiting to be expanded in the current pass.
+	 */
+	private OpenList openList;
+	/**
+	 * The states expanded in the current pass.
+	 */
+	private ClosedSet closed;
+	/**
+	 * The states reached more cheaply after being expanded in the current
+	 * pass, to be expanded again in the next.
+	 */
+	private HashSet<GridState> inconsistent;
+	/**
+	 * The instance of the target state once it has been reached, or null.
+	 */
+	private GridState goal;
+	/**
+	 * The state with the lowest estimate reached, for a search stopped before
+	 * it reaches the target.
+	 */
+	private GridState closest;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't.
+	 */
+	private SearchResult.Status stop;
+	/**
+	 * The heuristic guiding the search.
+	 */
+	private Heuristic estimator;
+	/**
+	 * The current weight's numerator, by which the estimate is multiplied.
+	 */
+	private int weightNumerator;
+	/**
+	 * The current weight's denominator, by which the cost to get to a state
+	 * is multiplied.
+	 */
+	private int weightDenominator;
+	/**
+	 * The statistics kept while searching.
+	 */
+	private SearchStats stats;
+
+	/**
+	 * Creates a search with the first weight, the step and the time limit
+	 * given by the <code>puzzle.ara.weight</code>,
+	 * <code>puzzle.ara.step</code> and <code>puzzle.ara.time</code> (in
+	 * milliseconds) system properties, or the defaults if they are not set.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a property isn't a number or is out of range.
+	 */
+	public AnytimeAStarSearch() {
+		this(Double.parseDouble(System.getProperty("puzzle.ara.weight",
+				String.valueOf(DEFAULT_WEIGHT))), Double.parseDouble(System
+				.getProperty("puzzle.ara.step",
+						String.valueOf(DEFAULT_STEP))), Long.getLong(
+				"puzzle.ara.time", DEFAULT_TIME_LIMIT));
+	}
+
+	/**
+	 * Creates a search.
+	 *
+	 * @param initialWeight
+	 *            The weight of the first pass, at least 1.
+	 * @param step
+	 *            The amount the weight is lowered by between passes, more
+	 *            than 0.
+	 * @param timeLimit
+	 *            The time in milliseconds the search may spend improving its
+	 *            path.
+	 * @throws IllegalArgumentException
+	 *             if the weight or step is out of range.
+	 */
+	public AnytimeAStarSearch(double initialWeight, double step,
+			long timeLimit) {
+		AStarSearch.weightAsFraction(initialWeight);
+		if (!(step > 0)) {
+			throw new IllegalArgumentException(
+					"The step must be more than 0: " + step);
+		}
+		this.initialWeight = initialWeight;
+		this.step = step;
+		this.timeLimit = TimeUnit.MILLISECONDS.toNanos(timeLimit);
+	}
+
+	/**
+	 * Finds a path from the start state to the target state, as short as the
+	 * time limit allows.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve.
+	 * @param heuristic
+	 *            The name of the heuristic to use.
+	 * @return the shortest path found, or no path if there isn't one, with
+	 *         the statistics of the search and the bound proven for the path.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic) {
+		return findPath(startState, targetState, heuristic, new SearchLimits());
+	}
+
+	/**
+	 * Finds a path from the start state to the target state, as short as the
+	 * time limit allows, stopping early if the search reaches one of its
+	 * limits. Unlike the time limit, the limits can stop the first pass.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve.
+	 * @param heuristic
+	 *            The name of the heuristic to use.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the shortest path found, or no path if there isn't one, with
+	 *         the statistics of the search and the bound proven for the path.
+	 *         If the search was stopped before it found any path, the partial
+	 *         path leads to the state with the lowest estimate it reached.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, SearchLimits limits) {
+		this.limits = limits;
+		stop = null;
+		stats = new SearchStats();
+		estimator = Heuristic.forName(heuristic, targetState);
+		reached = new HashMap<GridState, GridState>();
+		openList = new OpenList();
+		inconsistent = new HashSet<GridState>();
+		goal = null;
+		double weight = initialWeight;
+		setWeight(weight);
+
+		// Searches from a copy, so that the caller's state isn't linked to
+		// the states the search reaches.
+		GridState start = startState.copy();
+		start.setCostToGetToState(0);
+		start.setPredictedCostToTarget(estimator.estimate(start));
+		start.setCost(cost(start));
+		reached.put(start, start);
+		if (targetState.equals(start)) {
+			goal = start;
+		}
+		openList.add(start);
+		closest = start;
+		stats.startSearch();
+		long deadline = System.nanoTime() + timeLimit;
+
+		Path best = null;
+		double bound = Double.POSITIVE_INFINITY;
+		while (true) {
+			closed = new ClosedSet(startState.getBoard());
+			boolean finished = improvePath(targetState,
+					best == null ? Long.MAX_VALUE : deadline);
+			if (goal == null) {
+				if (stop != null) {
+					stats.startPath();
+					Path partial = Path.fromParents(closest);
+					int estimate = closest.getPredictedCostToTarget();
+					release();
+					stats.finish();
+					return new SearchResult(stop, partial, estimate, stats);
+				}
+				// The target can't be reached.
+				break;
+			}
+			int length = goal.getCostToGetToState();
+			double proven = length == 0 ? 1 : Math.max(1, (double) length
+					/ lowestCost());
+			if (finished) {
+				proven = Math.min(weight, proven);
+			}
+			if (best == null || length < best.length()) {
+				best = Path.fromParents(goal);
+				bound = proven;
+			} else {
+				bound = Math.min(bound, proven);
+			}
+			if (!finished || bound <= 1 || weight <= 1
+					|| System.nanoTime() > deadline) {
+				break;
+			}
+			weight = Math.max(1, weight - step);
+			setWeight(weight);
+			reorder();
+		}
+		stats.startPath();
+		release();
+		stats.finish();
+		return new SearchResult(best, stats, bound);
+	}
+
+	/**
+	 * Runs one pass of the search, expanding states until none in the open
+	 * list could lead to a cheaper path to the target, by the current weight,
+	 * than the one found.
+	 *
+	 * @param targetState
+	 *            The state the search is trying to get to.
+	 * @param deadline
+	 *            The time, from <code>System.nanoTime</code>, to give up the
+	 *            pass at.
+	 * @return true if the pass finished, false if it ran out of time or was
+	 *         stopped by the search's limits.
+	 */
+	private boolean improvePath(GridState targetState, long deadline) {
+		int expanded = 0;
+		while (!openList.isEmpty() && goalCost() > openList.getLowestCost()) {
+			if (++expanded % CLOCK_INTERVAL == 0
+					&& System.nanoTime() > deadline) {
+				return false;
+			}
+			stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				return false;
+			}
+			GridState current = openList.poll();
+			closed.add(current);
+
+			current.generateChildren();
+			stats.addExpanded();
+			for (GridState child : current.getChildren()) {
+				stats.addGenerated();
+				int costToGetToState = current.getCostToGetToState() + 1;
+				GridState known = reached.get(child);
+				if (known == null) {
+					child.setCostToGetToState(costToGetToState);
+					child.setPredictedCostToTarget(estimator.estimateAfterMove(
+							current.getPredictedCostToTarget(), child,
+							child.getBlankIndex(), current.getBlankIndex()));
+					child.setCost(cost(child));
+					reached.put(child, child);
+					if (targetState.equals(child)) {
+						goal = child;
+					}
+					if (child.getPredictedCostToTarget() < closest
+							.getPredictedCostToTarget()) {
+						closest = child;
+					}
+					openList.add(child);
+				} else if (costToGetToState < known.getCostToGetToState()) {
+					known.setParentState(current);
+					if (openList.contains(known)) {
+						openList.decreaseKey(known, costToGetToState, cost(
+								costToGetToState,
+								known.getPredictedCostToTarget()));
+					} else {
+						known.setCostToGetToState(costToGetToState);
+						known.setCost(cost(known));
+						if (closed.contains(known)) {
+							// Waits for the next pass, so that no state is
+							// expanded twice in one.
+							inconsistent.add(known);
+						} else {
+							openList.add(known);
+						}
+						stats.addReopened();
+					}
+				} else {
+					stats.addDuplicate();
+				}
+			}
+			stats.updateOpenSize(openList.size() + inconsistent.size());
+			stats.updateClosedSize(reached.size());
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the states set aside back in the open list, and orders every state
+	 * in it by the current weight.
+	 */
+	private void reorder() {
+		List<GridState> states = new ArrayList<GridState>(openList.states());
+		states.addAll(inconsistent);
+		inconsistent.clear();
+		openList = new OpenList();
+		for (GridState state : states) {
+			state.setCost(cost(state));
+			openList.add(state);
+		}
+	}
+
+	/**
+	 * Finds the lowest unweighted cost, g + h, of any state waiting to be
+	 * expanded, which no path to the target can be shorter than.
+	 *
+	 * @return the lowest cost, or <code>Integer.MAX_VALUE</code> if there are
+	 *         no states waiting.
+	 */
+	private int lowestCost() {
+		int lowest = Integer.MAX_VALUE;
+		for (GridState state : openList.states()) {
+			lowest = Math.min(lowest, state.getCostToGetToState()
+					+ state.getPredictedCostToTarget());
+		}
+		for (GridState state : inconsistent) {
+			lowest = Math.min(lowest, state.getCostToGetToState()
+					+ state.getPredictedCostToTarget());
+		}
+		return lowest;
+	}
+
+	/**
+	 * Returns the weighted cost of the path to the target found so far.
+	 *
+	 * @return the cost, or <code>Integer.MAX_VALUE</code> if the target
+	 *         hasn't been reached.
+	 */
+	private int goalCost() {
+		return goal == null ? Integer.MAX_VALUE : cost(goal);
+	}
+
+	/**
+	 * Sets the weight used by the costs.
+	 *
+	 * @param weight
+	 *            The weight, at least 1.
+	 */
+	private void setWeight(double weight) {
+		int[] fraction = AStarSearch.weightAsFraction(weight);
+		weightNumerator = fraction[0];
+		weightDenominator = fraction[1];
+	}
+
+	/**
+	 * Works out the weighted cost of a state from its costs.
+	 *
+	 * @param state
+	 *            The state.
+	 * @return the weighted cost.
+	 */
+	private int cost(GridState state) {
+		return cost(state.getCostToGetToState(),
+				state.getPredictedCostToTarget());
+	}
+
+	/**
+	 * Works out a weighted cost, scaled up to a whole number.
+	 *
+	 * @param costToGetToState
+	 *            The cost to get to the state, g.
+	 * @param predictedCostToTarget
+	 *            The estimate of the cost to get to the target, h.
+	 * @return the weighted cost.
+	 */
+	private int cost(int costToGetToState, int predictedCostToTarget) {
+		return weightDenominator * costToGetToState + weightNumerator
+				* predictedCostToTarget;
+	}
+
+	/**
+	 * Lets go of the states the search reached, so that they can be garbage
+	 * collected as soon as the path has been worked out.
+	 */
+	private void release() {
+		reached = null;
+		openList = null;
+		closed = null;
+		inconsistent = null;
+		goal = null;
+		closest = null;
+	}
+}
@@ -0,0 +1,273 @@
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves a whole file of puzzles in one run of the program, so the cost of
+ * starting the JVM and warming it up is paid once rather than per puzzle.
+ *
+ * Each line of the file holds one start state, with all of its tiles in
+ * row-major order separated by commas. The target is either shared by every
+ * line, read from a file in the same format as <code>Solve</code> takes, or
+ * given on each line after a semicolon. Lines that are blank or start with #
+ * are skipped.
+ *
+ * The puzzles are solved concurrently on a fork-join pool with one thread per
+ * processor (or the number given by the <code>puzzle.threads</code> system
+ * property), each with its own search instance, and a line of results is
+ * written to a shared <code>ResultWriter</code> and printed as soon as each
+ * puzzle is solved:
+ *
+ * <pre>
+ * line,status,moves,length,bound,generated,expanded,duplicates,reopened,peakOpen,peakClosed,setupNanos,searchNanos,pathNanos
+ * </pre>
+ *
+ * The status is "solved", "unsolvable", "failed" if the search finished
+ * without a path, "timeout", "node limit" or "cancelled" if it was stopped by
+ * the limits set by the <code>puzzle.limit.time</code> and
+ * <code>puzzle.limit.nodes</code> system properties, or "error: " followed by
+ * what was wrong with the line. The bound is the most times longer than the
+ * shortest path the path can be, 1 for the algorithms that only find shortest
+ * paths and empty if the algorithm can't say. If the
+ * <code>puzzle.format</code> system property is "json", each result is
+ * printed as a JSON object on its own line instead, with the statistics as an
+ * object of their own and, for a search that was stopped, the path to the
+ * most promising state it reached as a "partial" object. If the puzzles are
+ * kept in a <code>SolutionCache</code>, its hits and misses are printed to
+ * standard error at the end.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class BatchSolve {
+	/**
+	 * Whether the results are printed as JSON rather than comma separated
+	 * values.
+	 */
+	private static final boolean JSON = "json".equals(System
+			.getProperty("puzzle.format"));
+
+	/**
+	 * Solves every puzzle in the file.
+	 *
+	 * @param args
+	 *            The name of the file of start states, the name of the file
+	 *            holding the target state (or "-" if every line gives its own
+	 *            target), the algorithm to use and optionally the heuristic, as
+	 *            taken by <code>Solve</code>.
+	 * @throws FileNotFoundException
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the puzzles to be solved.
+	 */
+	public static void main(String args[]) throws FileNotFoundException,
+			InterruptedException {
+		GridState sharedTarget = null;
+		if (!args[1].equals("-")) {
+			FileIO fileIO = new FileIO();
+			fileIO.readFile(args[1], "target");
+			sharedTarget = fileIO.getTargetState();
+		}
+		final String algorithm = args[2];
+		final String heuristic = args.length > 3 ? args[3] : null;
+		// Fails before any puzzle is read if the algorithm isn't valid.
+		new Solver(algorithm, heuristic);
+
+		int threads = Integer.getInteger("puzzle.threads", Runtime
+				.getRuntime().availableProcessors());
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		// Every line of results is written whole, so the writer's own format
+		// doesn't matter.
+		final ResultWriter out = new ResultWriter(System.out, null);
+		if (!JSON) {
+			out.writeLine("line,status,moves,length,bound,"
+					+ SearchStats.CSV_HEADER);
+		}
+
+		Scanner fileReader = new Scanner(new InputStreamReader(
+				new FileInputStream(args[0])));
+		int lineNumber = 0;
+		while (fileReader.hasNextLine()) {
+			final String line = fileReader.nextLine().trim();
+			final int number = ++lineNumber;
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			final GridState target = sharedTarget;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					String result;
+					try {
+						result = solve(number, line, target, algorithm,
+								heuristic);
+					} catch (RuntimeException e) {
+						// Anything else that goes wrong, such as the
+						// external search failing to write its files, is
+						// reported on the puzzle's line rather than losing it.
+						result = format(number, "error: " + e, null);
+					}
+					out.writeLine(result);
+					out.flush();
+				}
+			});
+		}
+		fileReader.close();
+
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		out.flush();
+		if (Solver.getCache() != null) {
+			System.err.println(Solver.getCache());
+		}
+	}
+
+	/**
+	 * Solves the puzzle on one line of the file.
+	 *
+	 * @param number
+	 *            The line number, to identify the puzzle in the results.
+	 * @param line
+	 *            The line holding the start state and possibly the target.
+	 * @param sharedTarget
+	 *            The target shared by every line, or null if the line gives
+	 *            its own.
+	 * @param algorithm
+	 *            The name of the algorithm to use.
+	 * @param heuristic
+	 *            The name of the heuristic to use, or null for the default.
+	 * @return the line of results for the puzzle.
+	 */
+	static String solve(int number, String line, GridState sharedTarget,
+			String algorithm, String heuristic) {
+		return solve(number, line, sharedTarget, algorithm, heuristic, null);
+	}
+
+	/**
+	 * Solves the puzzle on one line of the file, stopping the search early if
+	 * it reaches one of the given limits.
+	 *
+	 * @param number
+	 *            The line number, to identify the puzzle in the results.
+	 * @param line
+	 *            The line holding the start state and possibly the target.
+	 * @param sharedTarget
+	 *            The target shared by every line, or null if the line gives
+	 *            its own.
+	 * @param algorithm
+	 *            The name of the algorithm to use.
+	 * @param heuristic
+	 *            The name of the heuristic to use, or null for the default.
+	 * @param limits
+	 *            When to give up the search, or null for the limits set by
+	 *            the system properties, starting once the line has been read.
+	 * @return the line of results for the puzzle.
+	 */
+	static String solve(int number, String line, GridState sharedTarget,
+			String algorithm, String heuristic, SearchLimits limits) {
+		GridState start;
+		GridState target;
+		try {
+			String[] parts = line.split(";");
+			if (sharedTarget == null) {
+				if (parts.length != 2) {
+					throw new IllegalArgumentException(
+							"expected a start and a target separated by ;");
+				}
+				target = parseFlatState(parts[1], null);
+			} else {
+				target = sharedTarget.copy();
+			}
+			start = parseFlatState(parts[0], target.getBoard());
+		} catch (IllegalArgumentException e) {
+			return format(number, "error: " + e.getMessage(), null);
+		}
+
+		Solver solver = new Solver(algorithm, heuristic);
+		SearchResult result;
+		try {
+			result = limits == null ? solver.solve(start, target) : solver
+					.solve(start, target, limits);
+		} catch (IllegalArgumentException e) {
+			return format(number, "error: " + e.getMessage(), null);
+		}
+		return format(number, result.getStatus().toString(), result);
+	}
+
+	/**
+	 * Writes the results for one puzzle in the chosen format.
+	 * 
+	 * @param number
+	 *            The line number of the puzzle.
+	 * @param status
+	 *            What became of the puzzle.
+	 * @param result
+	 *            The result of the search, or null if there was no search.
+	 * @return the line of results.
+	 */
+	static String format(int number, String status, SearchResult result) {
+		Path path = result == null ? null : result.getPath();
+		SearchStats stats = result == null ? null : result.getStats();
+		String moves = path == null ? "" : path.toMoveString();
+		String length = path == null ? "" : String.valueOf(path.length());
+		String bound = path == null ? "" : result.formatBound();
+		if (JSON) {
+			Path partial = result == null ? null : result.getPartialPath();
+			return "{\"line\":" + number + ",\"status\":"
+					+ ResultWriter.jsonString(status)
+					+ (path == null ? "" : ",\"moves\":\"" + moves
+							+ "\",\"length\":" + length)
+					+ (bound.isEmpty() ? "" : ",\"bound\":" + bound)
+					+ (partial == null ? "" : ",\"partial\":"
+							+ ResultWriter.partialJson(result))
+					+ (stats == null ? "" : ",\"stats\":" + stats.toJson())
+					+ "}";
+		}
+		// Keeps the status in one column of the results.
+		return number + "," + status.replace(',', ';') + "," + moves + ","
+				+ length + "," + bound + ","
+				+ (stats == null ? ",,,,,,,," : stats.toCsv());
+	}
+
+	/**
+	 * Parses a state written on one line, with its tiles in row-major order
+	 * separated by commas.
+	 *
+	 * @param tiles
+	 *            The tiles of the state.
+	 * @param board
+	 *            The board the state must be on, or null to assume a square
+	 *            board.
+	 * @return the state.
+	 * @throws IllegalArgumentException
+	 *             if the tiles don't make up a state on the board.
+	 */
+	static GridState parseFlatState(String tiles, Board board) {
+		String[] cells = tiles.trim().split(",");
+		if (board == null) {
+			int side = (int) Math.round(Math.sqrt(cells.length));
+			if (side * side != cells.length) {
+				throw new IllegalArgumentException(cells.length
+						+ " tiles don't make a square board");
+			}
+			board = new Board(side, side);
+		}
+		List<String> rows = new ArrayList<String>();
+		int columns = board.getColumns();
+		for (int row = 0; row * columns < cells.length; row++) {
+			rows.add(String.join(",", Arrays.copyOfRange(cells, row * columns,
+					Math.min(cells.length, (row + 1) * columns))));
+		}
+		GridState state = FileIO.parseState(rows);
+		if (!state.getBoard().equals(board)) {
+			throw new IllegalArgumentException("expected a " + board
+					+ " board");
+		}
+		return state;
+	}
+}
@@ -0,0 +1,450 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The class that is used to hold the data structures and behaviours to search
+ * from both ends of the puzzle at once: forwards from the initial state and
+ * backwards from the target state, stopping when the two searches meet. As
+ * every move can be undone, searching backwards from the target is the same
+ * as searching forwards from it.
+ *
+ * Each search only has to go about half the depth of the solution, so far
+ * fewer states are generated on deep puzzles than by searching from one end.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class BidirectionalSearch {
+	/**
+	 * Every state reached from the initial state, mapped to the instance of it
+	 * holding the cheapest known cost and the parent it was reached from.
+	 */
+	private HashMap<GridState, GridState> forwardStates = new HashMap<GridState, GridState>();
+	/**
+	 * Every state reached backwards from the target state, mapped in the same
+	 * way.
+	 */
+	private HashMap<GridState, GridState> backwardStates = new HashMap<GridState, GridState>();
+	/**
+	 * The cost of the cheapest path found through a state both searches have
+	 * reached.
+	 */
+	private int bestCost;
+	/**
+	 * The forwards instance of the state the cheapest path goes through.
+	 */
+	private GridState forwardMeeting;
+	/**
+	 * The backwards instance of the state the cheapest path goes through.
+	 */
+	private GridState backwardMeeting;
+	/**
+	 * The statistics kept while searching, covering both searches together.
+	 */
+	private SearchStats stats;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't.
+	 */
+	private SearchResult.Status stop;
+	/**
+	 * The most promising state the forward search has reached, for a search
+	 * stopped before the two meet: the last one expanded by the breadth first
+	 * search, or the one with the lowest estimate reached by A*.
+	 */
+	private GridState closest;
+	/**
+	 * Whether the states have heuristic estimates, as they do in the A*
+	 * search.
+	 */
+	private boolean estimated;
+
+	/**
+	 * Carries out a bidirectional breadth first search. Each step expands a
+	 * whole layer of whichever search has the smaller frontier, and the search
+	 * stops at the end of the first layer that reaches a state the other
+	 * search has already reached, as no shorter path can be found after it.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search.
+	 */
+	public SearchResult findPath(GridState initialState, GridState targetState) {
+		return findPath(initialState, targetState, new SearchLimits());
+	}
+
+	/**
+	 * Carries out a bidirectional breadth first search, stopping early if it
+	 * reaches one of its limits.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search. If the
+	 *         search was stopped, the partial path leads to the last state the
+	 *         forward search expanded.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, SearchLimits limits) {
+		this.limits = limits;
+		stop = null;
+		stats = new SearchStats();
+		// Searches from copies, so that the caller's states aren't linked to
+		// the states the searches reach.
+		initialState = initialState.copy();
+		targetState = targetState.copy();
+		bestCost = Integer.MAX_VALUE;
+		initialState.setCostToGetToState(0);
+		targetState.setCostToGetToState(0);
+		forwardStates.put(initialState, initialState);
+		backwardStates.put(targetState, targetState);
+		checkMeeting(initialState, true);
+
+		List<GridState> forwardFrontier = new ArrayList<GridState>();
+		List<GridState> backwardFrontier = new ArrayList<GridState>();
+		forwardFrontier.add(initialState);
+		backwardFrontier.add(targetState);
+		closest = initialState;
+		estimated = false;
+		stats.startSearch();
+
+		while (bestCost == Integer.MAX_VALUE && stop == null
+				&& !forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+			if (forwardFrontier.size() <= backwardFrontier.size()) {
+				forwardFrontier = expandLayer(forwardFrontier, true);
+			} else {
+				backwardFrontier = expandLayer(backwardFrontier, false);
+			}
+			stats.updateOpenSize(forwardFrontier.size()
+					+ backwardFrontier.size());
+			stats.updateClosedSize(forwardStates.size() + backwardStates.size());
+		}
+		return buildResult();
+	}
+
+	/**
+	 * Carries out a bidirectional A Star (A*) search, with each search guided
+	 * by the heuristic towards the other's starting point (front-to-end). The
+	 * search with fewer states waiting is expanded each step, and the search
+	 * stops once no waiting state on either side could lead to a path cheaper
+	 * than the best one found through a state both searches have reached.
+	 *
+	 * The backward search is aimed at a different start state for every
+	 * puzzle, so it only uses heuristics that need no tables; for any other it
+	 * uses the linear conflicts heuristic instead.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, String heuristic) {
+		return findPath(initialState, targetState, heuristic,
+				new SearchLimits());
+	}
+
+	/**
+	 * Carries out a bidirectional A Star (A*) search, stopping early if it
+	 * reaches one of its limits.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search. If the
+	 *         search was stopped, the partial path is the best path found
+	 *         through a state both searches reached, which may not be the
+	 *         shortest, or if there isn't one the path to the state with the
+	 *         lowest estimate the forward search reached.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, String heuristic, SearchLimits limits) {
+		this.limits = limits;
+		stop = null;
+		stats = new SearchStats();
+		// Searches from copies, so that the caller's states aren't linked to
+		// the states the searches reach.
+		initialState = initialState.copy();
+		targetState = targetState.copy();
+		Heuristic forwardHeuristic = Heuristic.forName(heuristic, targetState);
+		Heuristic backwardHeuristic = Heuristic.forName(
+				backwardHeuristic(heuristic), initialState);
+		OpenList forwardOpen = new OpenList();
+		OpenList backwardOpen = new OpenList();
+		bestCost = Integer.MAX_VALUE;
+
+		start(initialState, forwardHeuristic, forwardOpen, forwardStates);
+		start(targetState, backwardHeuristic, backwardOpen, backwardStates);
+		checkMeeting(initialState, true);
+		closest = initialState;
+		estimated = true;
+		stats.startSearch();
+
+		while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+			if (bestCost <= Math.max(forwardOpen.getLowestCost(),
+					backwardOpen.getLowestCost())) {
+				break;
+			}
+			stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				break;
+			}
+			if (forwardOpen.size() <= backwardOpen.size()) {
+				expand(forwardOpen.poll(), forwardHeuristic, forwardOpen, true);
+			} else {
+				expand(backwardOpen.poll(), backwardHeuristic, backwardOpen,
+						false);
+			}
+			stats.updateOpenSize(forwardOpen.size() + backwardOpen.size());
+			stats.updateClosedSize(forwardStates.size() + backwardStates.size());
+		}
+		return buildResult();
+	}
+
+	/**
+	 * Expands every state in a layer of one of the breadth first searches.
+	 *
+	 * @param frontier
+	 *            The states in the layer.
+	 * @param forward
+	 *            true if this is the search from the initial state.
+	 * @return the states in the next layer.
+	 */
+	private List<GridState> expandLayer(List<GridState> frontier,
+			boolean forward) {
+		HashMap<GridState, GridState> states = forward ? forwardStates
+				: backwardStates;
+		List<GridState> nextFrontier = new ArrayList<GridState>();
+		for (GridState current : frontier) {
+			stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				break;
+			}
+			if (forward) {
+				closest = current;
+			}
+			current.generateChildren();
+			stats.addExpanded();
+			for (GridState child : current.getChildren()) {
+				stats.addGenerated();
+				if (!states.containsKey(child)) {
+					child.setCostToGetToState(current.getCostToGetToState() + 1);
+					states.put(child, child);
+					nextFrontier.add(child);
+					checkMeeting(child, forward);
+				} else {
+					stats.addDuplicate();
+				}
+			}
+		}
+		return nextFrontier;
+	}
+
+	/**
+	 * Chooses the heuristic for the backward search. The pattern databases
+	 * are built and kept for each target they are aimed at, so aiming them at
+	 * every start state would build a new set for each puzzle.
+	 *
+	 * @param heuristic
+	 *            The name of the heuristic the forward search uses.
+	 * @return the name of the heuristic for the backward search.
+	 */
+	private static String backwardHeuristic(String heuristic) {
+		switch (heuristic) {
+		case "hamming":
+		case "manhattan":
+		case "linear":
+			return heuristic;
+		default:
+			return "linear";
+		}
+	}
+
+	/**
+	 * Sets up one of the A* searches at its starting state.
+	 *
+	 * @param state
+	 *            The state the search starts from.
+	 * @param heuristic
+	 *            The heuristic guiding the search.
+	 * @param openList
+	 *            The search's open list.
+	 * @param states
+	 *            The states the search has reached.
+	 */
+	private void start(GridState state, Heuristic heuristic,
+			OpenList openList, HashMap<GridState, GridState> states) {
+		state.setCostToGetToState(0);
+		state.setPredictedCostToTarget(heuristic.estimate(state));
+		state.setCost(state.getPredictedCostToTarget());
+		openList.add(state);
+		states.put(state, state);
+	}
+
+	/**
+	 * Expands a state of one of the A* searches, recording any cheaper path
+	 * through a child the other search has reached.
+	 *
+	 * @param current
+	 *            The state to expand.
+	 * @param heuristic
+	 *            The heuristic guiding the search.
+	 * @param openList
+	 *            The search's open list.
+	 * @param forward
+	 *            true if this is the search from the initial state.
+	 */
+	private void expand(GridState current, Heuristic heuristic,
+			OpenList openList, boolean forward) {
+		HashMap<GridState, GridState> states = forward ? forwardStates
+				: backwardStates;
+		current.generateChildren();
+		stats.addExpanded();
+		for (GridState child : current.getChildren()) {
+			stats.addGenerated();
+			int costToGetToState = current.getCostToGetToState() + 1;
+			GridState known = states.get(child);
+			if (known == null) {
+				child.setPredictedCostToTarget(heuristic.estimateAfterMove(
+						current.getPredictedCostToTarget(), child,
+						child.getBlankIndex(), current.getBlankIndex()));
+				known = child;
+				states.put(known, known);
+				if (forward
+						&& child.getPredictedCostToTarget() < closest
+								.getPredictedCostToTarget()) {
+					closest = child;
+				}
+			} else if (costToGetToState >= known.getCostToGetToState()) {
+				stats.addDuplicate();
+				continue;
+			} else {
+				known.setParentState(current);
+			}
+
+			// No path through a state whose total cost is already as high as
+			// the best path found can be an improvement.
+			int cost = costToGetToState + known.getPredictedCostToTarget();
+			if (openList.get(known) == known) {
+				openList.decreaseKey(known, costToGetToState, cost);
+			} else {
+				if (known != child) {
+					stats.addReopened();
+				}
+				known.setCostToGetToState(costToGetToState);
+				known.setCost(cost);
+				if (cost < bestCost) {
+					openList.add(known);
+				}
+			}
+			checkMeeting(known, forward);
+		}
+	}
+
+	/**
+	 * Records the path through the state if the other search has reached it
+	 * and the path is cheaper than the best found so far.
+	 *
+	 * @param state
+	 *            The instance of the state held by the search that has just
+	 *            reached it.
+	 * @param forward
+	 *            true if that is the search from the initial state.
+	 */
+	private void checkMeeting(GridState state, boolean forward) {
+		GridState other = (forward ? backwardStates : forwardStates)
+				.get(state);
+		if (other == null) {
+			return;
+		}
+		int cost = state.getCostToGetToState() + other.getCostToGetToState();
+		if (cost < bestCost) {
+			bestCost = cost;
+			forwardMeeting = forward ? state : other;
+			backwardMeeting = forward ? other : state;
+		}
+	}
+
+	/**
+	 * Joins the path from the initial state to the meeting state with the
+	 * path from the meeting state back to the target state.
+	 *
+	 * @return the joined path, or no path if the searches never met, with the
+	 *         statistics of the search, or the partial path if the search was
+	 *         stopped.
+	 */
+	private SearchResult buildResult() {
+		stats.startPath();
+		if (bestCost == Integer.MAX_VALUE) {
+			if (stop != null) {
+				Path partial = Path.fromParents(closest);
+				int estimate = estimated ? closest.getPredictedCostToTarget()
+						: -1;
+				release();
+				stats.finish();
+				return new SearchResult(stop, partial, estimate, stats);
+			}
+			// Failed to make a path
+			release();
+			stats.finish();
+			return new SearchResult(null, stats);
+		}
+		Path path = Path.fromParents(forwardMeeting);
+		// The backward search's parents lead on towards the target state.
+		int columns = backwardMeeting.getBoard().getColumns();
+		GridState current = backwardMeeting;
+		while (current.getParentState() != null) {
+			GridState next = current.getParentState();
+			path.addToEnd(Path.direction(columns, current.getBlankIndex(),
+					next.getBlankIndex()));
+			current = next;
+		}
+		release();
+		stats.finish();
+		if (stop != null) {
+			// The path reaches the target, but a shorter one may not have
+			// been ruled out.
+			return new SearchResult(stop, path, 0, stats);
+		}
+		return new SearchResult(path, stats);
+	}
+
+	/**
+	 * Lets go of the states the searches reached, so that they can be garbage
+	 * collected as soon as the path has been worked out.
+	 */
+	private void release() {
+		forwardStates = new HashMap<GridState, GridState>();
+		backwardStates = new HashMap<GridState, GridState>();
+		forwardMeeting = null;
+		backwardMeeting = null;
+		closest = null;
+	}
+}
@@ -0,0 +1,274 @@
+import java.util.Arrays;
+
+/**
+ * The shape of a sliding puzzle: the number of rows and columns it has, and
+ * how the tiles of a <code>GridState</code> on it are packed in to
+ * <code>long</code> words.
+ * 
+ * Each cell takes just enough bits to hold the largest tile on the board
+ * (four bits for the 8-puzzle and the 15-puzzle, five for the 24-puzzle), and
+ * a cell never straddles two words, so any board with up to 16 cells packs in
+ * to a single <code>long</code>.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public final class Board {
+	/**
+	 * The number of bits in each word of the packed tiles.
+	 */
+	private static final int BITS_PER_WORD = 64;
+	/**
+	 * The number of rows the puzzle has.
+	 */
+	private final int rows;
+	/**
+	 * The number of columns the puzzle has.
+	 */
+	private final int columns;
+	/**
+	 * The number of cells (tiles plus the gap) the puzzle has.
+	 */
+	private final int cellCount;
+	/**
+	 * The number of bits each cell takes up in the packed tiles.
+	 */
+	private final int bitsPerCell;
+	/**
+	 * The number of <code>long</code> words the packed tiles take up.
+	 */
+	private final int wordCount;
+	/**
+	 * Mask to extract a single cell once it has been shifted to the bottom of
+	 * its word.
+	 */
+	private final long cellMask;
+	/**
+	 * cellWords[cell] holds the index of the word the cell is packed in to.
+	 */
+	private final int[] cellWords;
+	/**
+	 * cellShifts[cell] holds the position of the cell's lowest bit within its
+	 * word.
+	 */
+	private final int[] cellShifts;
+	/**
+	 * neighbours[cell] holds the indices of the cells the gap can move to from
+	 * the cell.
+	 */
+	private final int[][] neighbours;
+
+	/**
+	 * Creates a board with the given number of rows and columns.
+	 * 
+	 * @param rows
+	 *            The number of rows the puzzle has.
+	 * @param columns
+	 *            The number of columns the puzzle has.
+	 * @throws IllegalArgumentException
+	 *             if the board would have fewer than two cells.
+	 */
+	public Board(int rows, int columns) {
+		if (rows < 1 || columns < 1 || rows * columns < 2) {
+			throw new IllegalArgumentException("A " + rows + "x" + columns
+					+ " board is too small to be a puzzle.");
+		}
+		this.rows = rows;
+		this.columns = columns;
+		this.cellCount = rows * columns;
+		this.bitsPerCell = BITS_PER_WORD
+				- Long.numberOfLeadingZeros(cellCount - 1);
+		this.cellMask = (1L << bitsPerCell) - 1;
+
+		int cellsPerWord = BITS_PER_WORD / bitsPerCell;
+		this.wordCount = (cellCount + cellsPerWord - 1) / cellsPerWord;
+		this.cellWords = new int[cellCount];
+		this.cellShifts = new int[cellCount];
+		for (int cell = 0; cell < cellCount; cell++) {
+			cellWords[cell] = cell / cellsPerWord;
+			cellShifts[cell] = (cell % cellsPerWord) * bitsPerCell;
+		}
+
+		this.neighbours = new int[cellCount][];
+		for (int cell = 0; cell < cellCount; cell++) {
+			int row = cell / columns;
+			int column = cell % columns;
+			int[] adjacent = new int[4];
+			int count = 0;
+			if (row > 0) {
+				adjacent[count++] = cell - columns;
+			}
+			if (row < rows - 1) {
+				adjacent[count++] = cell + columns;
+			}
+			if (column > 0) {
+				adjacent[count++] = cell - 1;
+			}
+			if (column < columns - 1) {
+				adjacent[count++] = cell + 1;
+			}
+			neighbours[cell] = Arrays.copyOf(adjacent, count);
+		}
+	}
+
+	/**
+	 * Returns the number of rows the puzzle has.
+	 * 
+	 * @return the number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the number of columns the puzzle has.
+	 * 
+	 * @return the number of columns.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns the number of cells (tiles plus the gap) the puzzle has.
+	 * 
+	 * @return the number of cells.
+	 */
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * Returns the number of bits each cell takes up in the packed tiles.
+	 * 
+	 * @return the number of bits per cell.
+	 */
+	public int getBitsPerCell() {
+		return bitsPerCell;
+	}
+
+	/**
+	 * Returns the number of <code>long</code> words the packed tiles of a
+	 * state on this board take up.
+	 * 
+	 * @return the number of words per state.
+	 */
+	public int getWordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Returns the cells next to the given cell, which the gap (zero) can move
+	 * to from it. The array must not be modified.
+	 * 
+	 * @param cell
+	 *            The row-major index of the cell.
+	 * @return the indices of the cells above, below, left and right of it
+	 *         that are on the board.
+	 */
+	public int[] getNeighbours(int cell) {
+		return neighbours[cell];
+	}
+
+	/**
+	 * Returns the number on the tile in the given cell of the packed tiles.
+	 * 
+	 * @param tiles
+	 *            The packed tiles.
+	 * @param cell
+	 *            The row-major index of the cell.
+	 * @return the number on the tile, zero for the gap.
+	 */
+	public int getTile(long[] tiles, int cell) {
+		return (int) ((tiles[cellWords[cell]] >>> cellShifts[cell]) & cellMask);
+	}
+
+	/**
+	 * Swaps the gap (zero) with the tile in the given cell of the packed tiles.
+	 * As the gap's bits are always zero, the tile only needs to be cleared
+	 * from its old cell and or-ed in to the gap's cell.
+	 * 
+	 * @param tiles
+	 *            The packed tiles, which are changed in place.
+	 * @param blankIndex
+	 *            The row-major index of the cell containing the gap.
+	 * @param cell
+	 *            The row-major index of the cell the gap moves to.
+	 */
+	public void moveBlank(long[] tiles, int blankIndex, int cell) {
+		int word = cellWords[cell];
+		int shift = cellShifts[cell];
+		long tile = (tiles[word] >>> shift) & cellMask;
+		tiles[word] &= ~(cellMask << shift);
+		tiles[cellWords[blankIndex]] |= tile << cellShifts[blankIndex];
+	}
+
+	/**
+	 * Packs the tiles of a grid, listed in row-major order, in to a new state
+	 * on this board.
+	 * 
+	 * @param cells
+	 *            The number on the tile in each cell, zero for the gap.
+	 * @return the state with those tiles.
+	 * @throws IllegalArgumentException
+	 *             if the tiles are not the numbers from zero up to one less
+	 *             than the number of cells, each appearing once.
+	 */
+	public GridState createState(int[] cells) {
+		if (cells.length != cellCount) {
+			throw new IllegalArgumentException("Expected " + cellCount
+					+ " tiles but found " + cells.length + ".");
+		}
+		long[] tiles = new long[wordCount];
+		boolean[] seen = new boolean[cellCount];
+		int blankIndex = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			int tile = cells[cell];
+			if (tile < 0 || tile >= cellCount || seen[tile]) {
+				throw new IllegalArgumentException("Tile " + tile
+						+ " is out of range or repeated on a " + this
+						+ " board.");
+			}
+			seen[tile] = true;
+			if (tile == 0) {
+				blankIndex = cell;
+			}
+			tiles[cellWords[cell]] |= (long) tile << cellShifts[cell];
+		}
+		return new GridState(this, tiles, blankIndex);
+	}
+
+	/**
+	 * Two boards are equal if they have the same number of rows and columns.
+	 * 
+	 * @return true if the boards are the same shape.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Board)) {
+			return false;
+		}
+		Board other = (Board) obj;
+		return rows == other.rows && columns == other.columns;
+	}
+
+	/**
+	 * Returns a hash code consistent with <code>equals</code>.
+	 * 
+	 * @return a hash code for the board.
+	 */
+	@Override
+	public int hashCode() {
+		return rows * 31 + columns;
+	}
+
+	/**
+	 * Returns the size of the board, for example "4x4".
+	 * 
+	 * @return the number of rows and columns of the board.
+	 */
+	@Override
+	public String toString() {
+		return rows + "x" + columns;
+	}
+}
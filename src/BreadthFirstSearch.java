@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,24 +14,15 @@ public class BreadthFirstSearch {
 	 * Contains a list of the <code>GridState</code> objects that have already
 	 * been worked on.
 	 */
-	private ArrayList<GridState> closed = new ArrayList<GridState>();
+	private ClosedSet closed;
 	/**
 	 * Keeps track of the order of the states to work on.
 	 */
 	private Queue<GridState> queue = new LinkedList<GridState>();
 	/**
-	 * Keeps a track of how many nodes have been expanded.
+	 * The statistics kept while searching.
 	 */
-	private int nodesExpanded = 0;
-
-	/**
-	 * Returns the number of nodes that have been expanded.
-	 * 
-	 * @return the number of nodes that have been expanded.
-	 */
-	public int getNodesExpanded() {
-		return nodesExpanded;
-	}
+	private SearchStats stats;
 
 	/**
 	 * Carries out the breadth first search algorithm on the 8-puzzle to be
@@ -48,11 +38,39 @@ public class BreadthFirstSearch {
 	 *            The target (goal) state that the algorithm is required to try
 	 *            and reach. Represents the tile positions the algorithm is to
 	 *            try and get to by the end of the algorithm.
-	 * @return the targetState <code>GridState</code> object when the solution
-	 *         is found.
+	 * @return the path to the target state, or no path if there isn't one,
+	 *         with the statistics of the search.
 	 */
-	public Path findPath(GridState initialState, GridState targetState) {
-		queue.add(initialState);
+	public SearchResult findPath(GridState initialState, GridState targetState) {
+		return findPath(initialState, targetState, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the breadth first search, stopping early if it reaches one
+	 * of its limits.
+	 * 
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path to the target state, or no path if there isn't one,
+	 *         with the statistics of the search. If the search was stopped,
+	 *         the partial path leads to the last state it reached, which is
+	 *         as far from the start as any.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, SearchLimits limits) {
+		stats = new SearchStats();
+		closed = new ClosedSet(initialState.getBoard());
+		// Searches from a copy, so that the caller's state isn't linked to
+		// the states the search reaches.
+		GridState start = initialState.copy();
+		queue.add(start);
+		closed.add(start);
+		stats.startSearch();
 
 		while (!queue.isEmpty()) {
 			GridState current = queue.poll();
@@ -60,30 +78,48 @@ public class BreadthFirstSearch {
 			// If the GridState object currently being worked on is the target,
 			// break out of the loop.
 			if (current.equals(targetState)) {
-				System.out.println("TARGET STATE REACHED");
-				System.out.println("This is the path it took:\n");
-
+				stats.startPath();
 				// Traverses backwards to work out the path the algorithm took
-				Path path = new Path();
-				while (current.getParentState() != null) {
-					path.addToStart(current);
-					current = current.getParentState();
-				}
-				return path;
+				Path path = Path.fromParents(current);
+				release();
+				stats.finish();
+				return new SearchResult(path, stats);
 			}
 
-			queue.remove(current);
-			closed.add(current);
-
+			SearchResult.Status stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				stats.startPath();
+				Path partial = Path.fromParents(current);
+				release();
+				stats.finish();
+				return new SearchResult(stop, partial, -1, stats);
+			}
 			current.generateChildren();
+			stats.addExpanded();
 			for (GridState child : current.getChildren()) {
-				nodesExpanded++;
-				if (!this.closed.contains(child)) {
+				stats.addGenerated();
+				if (closed.add(child)) {
 					queue.add(child);
-					closed.add(child);
+				} else {
+					stats.addDuplicate();
 				}
 			}
+			stats.updateOpenSize(queue.size());
+			stats.updateClosedSize(closed.size());
 		}
-		return null; // Failed to make a path
+		// Failed to make a path
+		stats.startPath();
+		release();
+		stats.finish();
+		return new SearchResult(null, stats);
+	}
+
+	/**
+	 * Lets go of the states the search reached, so that they can be garbage
+	 * collected as soon as the path has been worked out.
+	 */
+	private void release() {
+		closed = null;
+		queue = new LinkedList<GridState>();
 	}
 }
@@ -0,0 +1,36 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Builds the pattern databases for a target state ahead of time, so that the
+ * first search that uses the pattern database heuristic doesn't have to.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class BuildPatternDatabases {
+	/**
+	 * Builds the databases.
+	 * 
+	 * @param args
+	 *            The file name of the file containing the target state,
+	 *            optionally followed by the directory to write the databases to
+	 *            (the <code>puzzle.pdb.dir</code> system property, or
+	 *            <code>pdb</code>, if it is left out).
+	 * @throws IOException
+	 *             if the target couldn't be read or a database couldn't be
+	 *             written.
+	 */
+	public static void main(String args[]) throws IOException {
+		FileIO fileIO = new FileIO();
+		fileIO.readFile(args[0], "target");
+		File directory = new File(args.length > 1 ? args[1]
+				: System.getProperty("puzzle.pdb.dir",
+						PatternDatabaseHeuristic.DEFAULT_DIRECTORY));
+
+		long startTime = System.currentTimeMillis();
+		PatternDatabaseHeuristic.forTarget(fileIO.getTargetState(), directory);
+		System.out.println("Pattern databases ready in " + directory + " after "
+				+ (System.currentTimeMillis() - startTime) + " milliseconds.");
+	}
+}
@@ -0,0 +1,281 @@
+/**
+ * The set of states a search algorithm has already visited, shared by all of
+ * the algorithms in place of a list of <code>GridState</code> objects.
+ * 
+ * On boards small enough for every permutation to be indexed (the 8-puzzle
+ * and smaller), the states are indexed by their permutation rank, so
+ * membership is a single bit in an n!-bit bitmap. When the algorithm also
+ * needs the cost it took to get to each state (as A* does), the costs are kept
+ * in a byte array indexed the same way.
+ * 
+ * On larger boards the packed words of each state are kept in an open
+ * addressing hash table instead, so each state takes a few words of memory
+ * rather than a <code>GridState</code> object.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class ClosedSet {
+	/**
+	 * The largest number of cells a board can have for its states to be
+	 * indexed by permutation rank (10! is a little over 3.6 million).
+	 */
+	private static final int MAXIMUM_RANKED_CELLS = 10;
+	/**
+	 * The largest cost that can be held in the <code>costs</code> array.
+	 */
+	private static final int MAXIMUM_COST = 0xFF;
+	/**
+	 * The initial number of slots in the hash table.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	/**
+	 * The number of words each state takes up.
+	 */
+	private final int wordCount;
+	/**
+	 * One bit per permutation rank, set if the state has been visited, or null
+	 * if the states are hashed.
+	 */
+	private final long[] visited;
+	/**
+	 * The cost to get to each visited state, indexed by permutation rank, or
+	 * null if the costs are not being recorded or the states are hashed.
+	 */
+	private final byte[] costs;
+	/**
+	 * The packed words of the hashed states, <code>wordCount</code> words per
+	 * slot.
+	 */
+	private long[] keys;
+	/**
+	 * One more than the cost to get to the hashed state in each slot, or zero
+	 * if the slot is empty.
+	 */
+	private int[] values;
+	/**
+	 * The number of states in the set.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates an empty set that records membership only.
+	 * 
+	 * @param board
+	 *            The board the states belong to.
+	 */
+	public ClosedSet(Board board) {
+		this(board, false);
+	}
+
+	/**
+	 * Creates an empty set.
+	 * 
+	 * @param board
+	 *            The board the states belong to.
+	 * @param recordCosts
+	 *            Whether the cost to get to each state should be recorded
+	 *            along with it.
+	 */
+	public ClosedSet(Board board, boolean recordCosts) {
+		wordCount = board.getWordCount();
+		if (board.getCellCount() <= MAXIMUM_RANKED_CELLS) {
+			int permutations = (int) PermutationRank
+					.numberOfPermutations(board);
+			visited = new long[(permutations + 63) >>> 6];
+			costs = recordCosts ? new byte[permutations] : null;
+		} else {
+			visited = null;
+			costs = null;
+			keys = new long[INITIAL_CAPACITY * wordCount];
+			values = new int[INITIAL_CAPACITY];
+		}
+	}
+
+	/**
+	 * Determines whether the state has been visited.
+	 * 
+	 * @param state
+	 *            The state to look for.
+	 * @return true if the state is in the set.
+	 */
+	public boolean contains(GridState state) {
+		if (visited == null) {
+			return values[findSlot(state)] != 0;
+		}
+		int rank = (int) PermutationRank.rank(state);
+		return (visited[rank >>> 6] & (1L << rank)) != 0;
+	}
+
+	/**
+	 * Adds the state to the set.
+	 * 
+	 * @param state
+	 *            The state to add.
+	 * @return true if the state was not already in the set.
+	 */
+	public boolean add(GridState state) {
+		if (visited == null) {
+			int slot = findSlot(state);
+			if (values[slot] != 0) {
+				return false;
+			}
+			insert(slot, state, 0);
+			return true;
+		}
+		return add((int) PermutationRank.rank(state));
+	}
+
+	/**
+	 * Adds the state to the set along with the cost it took to get to it,
+	 * replacing any cost already recorded for it.
+	 * 
+	 * @param state
+	 *            The state to add.
+	 * @param cost
+	 *            The cost it took to get to the state.
+	 * @return true if the state was not already in the set.
+	 */
+	public boolean add(GridState state, int cost) {
+		if (visited == null) {
+			int slot = findSlot(state);
+			if (values[slot] != 0) {
+				values[slot] = cost + 1;
+				return false;
+			}
+			insert(slot, state, cost);
+			return true;
+		}
+		if (cost < 0 || cost > MAXIMUM_COST) {
+			throw new IllegalArgumentException("Cost " + cost
+					+ " can't be recorded in the closed set.");
+		}
+		int rank = (int) PermutationRank.rank(state);
+		costs[rank] = (byte) cost;
+		return add(rank);
+	}
+
+	/**
+	 * Returns the cost recorded for the state when it was added.
+	 * 
+	 * @param state
+	 *            The state to look up, which must be in the set.
+	 * @return the cost it took to get to the state.
+	 */
+	public int getCost(GridState state) {
+		if (visited == null) {
+			return values[findSlot(state)] - 1;
+		}
+		return costs[(int) PermutationRank.rank(state)] & MAXIMUM_COST;
+	}
+
+	/**
+	 * Returns the number of states in the set.
+	 * 
+	 * @return the number of states in the set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the bit for the given rank.
+	 * 
+	 * @param rank
+	 *            The permutation rank of the state being added.
+	 * @return true if the bit was not already set.
+	 */
+	private boolean add(int rank) {
+		long bit = 1L << rank;
+		if ((visited[rank >>> 6] & bit) != 0) {
+			return false;
+		}
+		visited[rank >>> 6] |= bit;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Finds the slot of the hash table holding the state, or the empty slot
+	 * where it would go, by linear probing.
+	 * 
+	 * @param state
+	 *            The state to look for.
+	 * @return the index of the slot.
+	 */
+	private int findSlot(GridState state) {
+		int mask = values.length - 1;
+		int slot = state.hashCode() & mask;
+		while (values[slot] != 0 && !matches(slot, state)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Determines whether the given slot holds the state's packed words.
+	 * 
+	 * @param slot
+	 *            The index of the slot.
+	 * @param state
+	 *            The state to compare against.
+	 * @return true if the slot holds the state.
+	 */
+	private boolean matches(int slot, GridState state) {
+		int offset = slot * wordCount;
+		for (int i = 0; i < wordCount; i++) {
+			if (keys[offset + i] != state.getWord(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the state in an empty slot of the hash table, growing the table if
+	 * it has become three quarters full.
+	 * 
+	 * @param slot
+	 *            The empty slot found for the state.
+	 * @param state
+	 *            The state to insert.
+	 * @param cost
+	 *            The cost it took to get to the state.
+	 */
+	private void insert(int slot, GridState state, int cost) {
+		int offset = slot * wordCount;
+		for (int i = 0; i < wordCount; i++) {
+			keys[offset + i] = state.getWord(i);
+		}
+		values[slot] = cost + 1;
+		size++;
+		if (size * 4L > values.length * 3L) {
+			grow();
+		}
+	}
+
+	/**
+	 * Doubles the size of the hash table and re-inserts every state in to it.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		int mask = values.length - 1;
+		for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+			if (oldValues[oldSlot] == 0) {
+				continue;
+			}
+			int oldOffset = oldSlot * wordCount;
+			int slot = GridState.hashWords(oldKeys, oldOffset, wordCount)
+					& mask;
+			while (values[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			System.arraycopy(oldKeys, oldOffset, keys, slot * wordCount,
+					wordCount);
+			values[slot] = oldValues[oldSlot];
+		}
+	}
+}
@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.Stack;
 
 /**
@@ -12,24 +11,21 @@ public class DepthFirstSearch {
 	/**
 	 * Stores the GridStates that have already been visited by the algorithm.
 	 */
-	private ArrayList<GridState> closed = new ArrayList<GridState>();
+	private ClosedSet closed;
 	/**
 	 * Used to keep a track of the order of the states to visit.
 	 */
 	private Stack<GridState> stack = new Stack<GridState>();
 	/**
-	 * Keeps a track of how many nodes have been expanded.
+	 * Holds, for each state on the stack, the index of the next of its
+	 * children to try, so that a return to it after backtracking carries on
+	 * from there rather than looking at every child again.
 	 */
-	private int nodesExpanded = 0;
-
+	private Stack<Integer> nextChild = new Stack<Integer>();
 	/**
-	 * Returns the number of nodes that have been expanded.
-	 * 
-	 * @return The number of nodes that have been expanded.
+	 * The statistics kept while searching.
 	 */
-	public int getNodesExpanded() {
-		return nodesExpanded;
-	}
+	private SearchStats stats;
 
 	/**
 	 * Carries out the depth first search algorithm on the 8 puzzle to be
@@ -45,44 +41,108 @@ public class DepthFirstSearch {
 	 *            The target (goal) state that the algorithm is required to try
 	 *            and reach. Represents the tile positions the algorithm is to
 	 *            try and get to by the end of the algorithm.
-	 * @return The targetState <code>GridState</code> object when the solution
-	 *         is found.
+	 * @return the path to the target state, or no path if there isn't one,
+	 *         with the statistics of the search.
+	 */
+	public SearchResult findPath(GridState initialState, GridState targetState) {
+		return findPath(initialState, targetState, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the depth first search, stopping early if it reaches one of
+	 * its limits.
+	 * 
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path to the target state, or no path if there isn't one,
+	 *         with the statistics of the search. If the search was stopped,
+	 *         the partial path is the path it was following.
 	 */
-	public Path findPath(GridState initialState, GridState targetState) {
-		stack.push(initialState);
-		closed.add(initialState);
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, SearchLimits limits) {
+		stats = new SearchStats();
+		closed = new ClosedSet(initialState.getBoard());
+		// Searches from a copy, so that the caller's state isn't linked to
+		// the states the search reaches.
+		GridState start = initialState.copy();
+		stack.push(start);
+		nextChild.push(0);
+		closed.add(start);
+		stats.startSearch();
 
 		while (!stack.isEmpty()) {
 			GridState current = stack.peek();
 
 			if (current.equals(targetState)) {
-				System.out.println("TARGET STATE REACHED\n");
-				System.out.println("This is the path it took:");
-
+				stats.startPath();
 				// Traverses backwards to work out the path the algorithm took
-				Path path = new Path();
-				while (current.getParentState() != null) {
-					path.addToStart(current);
-					current = current.getParentState();
-				}
-				return path;
+				Path path = Path.fromParents(current);
+				release();
+				stats.finish();
+				// A depth first search may find any path, however long.
+				return new SearchResult(path, stats,
+						Double.POSITIVE_INFINITY);
 			}
 
-			// Generate the children of the state currently being worked on.
-			current.generateChildren();
-			for (GridState child : current.getChildren()) {
-				nodesExpanded++;
-				// If the child has already been worked on
-				if (!this.closed.contains(child)) {
-					stack.push(child);
-					closed.add(child);
-					current = child;
-					break;
+			// Generate the children of the state currently being worked on,
+			// unless this is a return to it after backtracking.
+			int next = nextChild.peek();
+			if (next == 0) {
+				SearchResult.Status stop = limits.check(stats.getExpanded());
+				if (stop != null) {
+					stats.startPath();
+					Path partial = Path.fromParents(current);
+					release();
+					stats.finish();
+					return new SearchResult(stop, partial, -1, stats);
+				}
+				current.generateChildren();
+				stats.addExpanded();
+				for (int i = 0; i < current.getChildren().size(); i++) {
+					stats.addGenerated();
+				}
+			}
+			GridState unvisited = null;
+			while (unvisited == null && next < current.getChildren().size()) {
+				GridState child = current.getChildren().get(next++);
+				// If the child hasn't already been worked on
+				if (closed.add(child)) {
+					unvisited = child;
 				} else {
-					stack.remove(child);
+					stats.addDuplicate();
 				}
 			}
+			if (unvisited != null) {
+				nextChild.set(nextChild.size() - 1, next);
+				stack.push(unvisited);
+				nextChild.push(0);
+			} else {
+				// Every child has been visited, so backtrack.
+				stack.pop();
+				nextChild.pop();
+			}
+			stats.updateOpenSize(stack.size());
+			stats.updateClosedSize(closed.size());
 		}
-		return null; // Failed to make a path
+		// Failed to make a path
+		stats.startPath();
+		release();
+		stats.finish();
+		return new SearchResult(null, stats);
+	}
+
+	/**
+	 * Lets go of the states the search reached, so that they can be garbage
+	 * collected as soon as the path has been worked out.
+	 */
+	private void release() {
+		closed = null;
+		stack = new Stack<GridState>();
+		nextChild = new Stack<Integer>();
 	}
 }
@@ -0,0 +1,299 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * The exact number of moves from every state of the 8-puzzle to the canonical
+ * goal, in which the tiles 1 to 8 are in order with the gap in the bottom
+ * right corner.
+ *
+ * Only half of the 9! arrangements of the tiles can reach the goal, so the
+ * table has one byte for each of those 181,440 states. A state's entry is
+ * found from the cell the gap is in and the rank of the order of the other
+ * tiles, which is halved as only one of each pair of orders differing in the
+ * last two tiles can be reached.
+ *
+ * The table is filled by a breadth first search backwards from the goal,
+ * once, and kept in a file. A path is then found without any search at all by
+ * always moving to a neighbouring state one move closer to the goal.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class DistanceTable {
+	/**
+	 * The first four bytes of every distance table file ("SDTB").
+	 */
+	private static final int MAGIC = 0x53445442;
+	/**
+	 * Marks a state that the search has not reached yet.
+	 */
+	private static final byte UNVISITED = (byte) 0xFF;
+	/**
+	 * The board the table is for.
+	 */
+	public static final Board BOARD = new Board(3, 3);
+	/**
+	 * The number of orders of the eight tiles that can reach the goal with the
+	 * gap in a given cell, 8! / 2.
+	 */
+	private static final int ORDERS_PER_CELL = 20160;
+	/**
+	 * The number of states that can reach the goal.
+	 */
+	public static final int NUMBER_OF_STATES = ORDERS_PER_CELL * 9;
+	/**
+	 * The name of the file the table is kept in.
+	 */
+	private static final String FILE_NAME = "3x3-distances.tbl";
+	/**
+	 * The table loaded by <code>forCanonicalGoal</code>, shared by every
+	 * caller as it is never changed.
+	 */
+	private static DistanceTable sharedTable;
+	/**
+	 * The number of moves from each state to the goal, indexed by
+	 * <code>index</code>.
+	 */
+	private final byte[] distances;
+
+	/**
+	 * Creates a table around distances that have already been built or
+	 * loaded.
+	 *
+	 * @param distances
+	 *            The number of moves from each state to the goal.
+	 */
+	private DistanceTable(byte[] distances) {
+		this.distances = distances;
+	}
+
+	/**
+	 * Returns the canonical goal, 1 to 8 in order followed by the gap.
+	 *
+	 * @return a new instance of the goal state.
+	 */
+	public static GridState canonicalGoal() {
+		return BOARD.createState(new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 });
+	}
+
+	/**
+	 * Returns the table kept in the directory named by the
+	 * <code>puzzle.pdb.dir</code> system property, or <code>pdb</code> if it
+	 * is not set, building and writing it first if it is missing. The table is
+	 * only loaded once, however many times this is called.
+	 *
+	 * @return the table.
+	 * @throws IOException
+	 *             if the table couldn't be read or written.
+	 */
+	public static synchronized DistanceTable forCanonicalGoal()
+			throws IOException {
+		if (sharedTable == null) {
+			File directory = new File(System.getProperty("puzzle.pdb.dir",
+					PatternDatabaseHeuristic.DEFAULT_DIRECTORY));
+			File file = new File(directory, FILE_NAME);
+			if (!file.exists()) {
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("Couldn't create " + directory);
+				}
+				System.err.println("Building distance table " + file + "...");
+				build().write(file);
+			}
+			sharedTable = load(file);
+		}
+		return sharedTable;
+	}
+
+	/**
+	 * Fills in the table with a breadth first search backwards from the goal.
+	 * The queue holds each state's packed tiles, which for the 8-puzzle fit
+	 * in a single word, alongside the cell its gap is in.
+	 *
+	 * @return the table.
+	 */
+	public static DistanceTable build() {
+		byte[] distances = new byte[NUMBER_OF_STATES];
+		Arrays.fill(distances, UNVISITED);
+		long[] queuedTiles = new long[NUMBER_OF_STATES];
+		int[] queuedBlanks = new int[NUMBER_OF_STATES];
+
+		GridState goal = canonicalGoal();
+		queuedTiles[0] = goal.getWord(0);
+		queuedBlanks[0] = goal.getBlankIndex();
+		distances[index(queuedTiles[0], queuedBlanks[0])] = 0;
+		int head = 0;
+		int tail = 1;
+		long[] tiles = new long[1];
+		while (head < tail) {
+			int blankIndex = queuedBlanks[head];
+			long parentTiles = queuedTiles[head];
+			head++;
+			byte distance = (byte) (distances[index(parentTiles, blankIndex)] + 1);
+			for (int cell : BOARD.getNeighbours(blankIndex)) {
+				tiles[0] = parentTiles;
+				BOARD.moveBlank(tiles, blankIndex, cell);
+				int child = index(tiles[0], cell);
+				if (distances[child] == UNVISITED) {
+					distances[child] = distance;
+					queuedTiles[tail] = tiles[0];
+					queuedBlanks[tail] = cell;
+					tail++;
+				}
+			}
+		}
+		return new DistanceTable(distances);
+	}
+
+	/**
+	 * Writes the table to a file.
+	 *
+	 * @param file
+	 *            The file to write to.
+	 * @throws IOException
+	 *             if the file couldn't be written.
+	 */
+	public void write(File file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(12);
+		header.putInt(MAGIC);
+		header.putInt(BOARD.getRows());
+		header.putInt(BOARD.getColumns());
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(header.array());
+			output.write(distances);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads a table from a file.
+	 *
+	 * @param file
+	 *            The file to read.
+	 * @return the table.
+	 * @throws IOException
+	 *             if the file couldn't be read or isn't a distance table.
+	 */
+	public static DistanceTable load(File file) throws IOException {
+		ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if (contents.remaining() != 12 + NUMBER_OF_STATES
+				|| contents.getInt() != MAGIC
+				|| contents.getInt() != BOARD.getRows()
+				|| contents.getInt() != BOARD.getColumns()) {
+			throw new IOException(file + " is not a distance table for a "
+					+ BOARD + " board.");
+		}
+		byte[] distances = new byte[NUMBER_OF_STATES];
+		contents.get(distances);
+		return new DistanceTable(distances);
+	}
+
+	/**
+	 * Returns the number of moves it takes to get from the state to the goal.
+	 *
+	 * @param state
+	 *            A state of the 8-puzzle that can reach the canonical goal.
+	 * @return the number of moves.
+	 */
+	public int getDistance(GridState state) {
+		return distances[index(state.getWord(0), state.getBlankIndex())];
+	}
+
+	/**
+	 * Finds a shortest path from the start state to the canonical goal by
+	 * moving, at every step, to whichever neighbouring state is one move
+	 * closer to the goal. No states are searched, so this takes time in
+	 * proportion to the length of the path.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state to get to, which must be the canonical goal.
+	 * @return the path from the start state to the goal, or no path if the
+	 *         goal can't be reached from the start state, with the statistics
+	 *         of the walk. As there is no search, the whole walk is timed as
+	 *         working out the path.
+	 * @throws IllegalArgumentException
+	 *             if the target isn't the canonical goal of the 8-puzzle.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState) {
+		if (!targetState.equals(canonicalGoal())) {
+			throw new IllegalArgumentException(
+					"The distance table only covers the 8-puzzle with the goal "
+							+ "1 to 8 followed by the gap.");
+		}
+		SearchStats stats = new SearchStats();
+		stats.startSearch();
+		stats.startPath();
+		// The table only holds half the rank of each order, so a state that
+		// can't reach the goal shares its entry with one that can.
+		if (!Solvability.isSolvable(startState, targetState)) {
+			stats.finish();
+			return new SearchResult(null, stats);
+		}
+		Path path = new Path(startState);
+		GridState current = startState.copy();
+		int distance = getDistance(current);
+		while (distance > 0) {
+			stats.addExpanded();
+			boolean stepped = false;
+			for (int direction = GridState.UP; direction <= GridState.RIGHT; direction++) {
+				if (!current.canMove(direction)) {
+					continue;
+				}
+				current.moveZero(direction);
+				stats.addGenerated();
+				if (getDistance(current) == distance - 1) {
+					path.addToEnd(direction);
+					stepped = true;
+					break;
+				}
+				current.moveZero(GridState.opposite(direction));
+			}
+			if (!stepped) {
+				// No neighbour is one move closer, so the table doesn't
+				// describe this state.
+				stats.finish();
+				return new SearchResult(null, stats);
+			}
+			distance--;
+		}
+		stats.finish();
+		return new SearchResult(path, stats);
+	}
+
+	/**
+	 * Returns the position in the table of the state with the given packed
+	 * tiles: the cell the gap is in, followed by half the rank of the order
+	 * of the other eight tiles.
+	 *
+	 * @param tiles
+	 *            The packed tiles, which for the 8-puzzle fit in a single
+	 *            word.
+	 * @param blankIndex
+	 *            The cell the gap is in.
+	 * @return the state's position in the table.
+	 */
+	private static int index(long tiles, int blankIndex) {
+		int bits = BOARD.getBitsPerCell();
+		int rank = 0;
+		int seen = 0;
+		int remaining = 8;
+		for (int cell = 0; cell < 9; cell++) {
+			if (cell == blankIndex) {
+				continue;
+			}
+			int tile = (int) ((tiles >>> (cell * bits)) & ((1 << bits) - 1));
+			int smallerSeen = Integer.bitCount(seen & ((1 << tile) - 1));
+			remaining--;
+			rank = rank * (remaining + 1) + (tile - 1 - smallerSeen);
+			seen |= 1 << tile;
+		}
+		return blankIndex * ORDERS_PER_CELL + (rank >> 1);
+	}
+}
@@ -0,0 +1,728 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out a breadth first search that keeps its layers on disk rather than in the
+ * heap, so that it can search further than memory allows.
+ *
+ * Each layer (depth) is a file of packed states in sorted order. The next
+ * layer is made by reading the current one a block at a time and writing its
+ * children to disk in sorted runs, each no larger than a fixed buffer. The
+ * runs are then merged with each other and with the current and previous
+ * layers, which are read at the same time, and only children found in
+ * neither are written to the next layer. A move can only lead back to the
+ * layer before, so no older layers need to be checked, and duplicates are
+ * found without ever holding more than the buffer and a block of each file.
+ *
+ * Every layer is kept until the search is over, so that the path can be
+ * worked out by going back one layer at a time, looking up which neighbour
+ * of the current state is in the layer before with a binary search of its
+ * file.
+ *
+ * States are held as a single packed word, so only boards of up to 16 cells
+ * (the 15-puzzle) can be searched.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class ExternalBreadthFirstSearch {
+	/**
+	 * The number of bytes read from or written to a file at once.
+	 */
+	private static final int BLOCK_SIZE = 1 << 16;
+	/**
+	 * The most runs merged at once, which bounds the number of files open and
+	 * the memory taken by their blocks.
+	 */
+	private static final int MAXIMUM_FAN_IN = 64;
+	/**
+	 * Returned in place of the size of the next layer when the target is
+	 * found.
+	 */
+	private static final long FOUND = -1;
+	/**
+	 * The number of states sorted in memory before being written as a run,
+	 * when none is given.
+	 */
+	public static final int DEFAULT_BUFFER = 1 << 22;
+	/**
+	 * The directory the search's own directory of layers is made in.
+	 */
+	private final File directory;
+	/**
+	 * The number of states sorted in memory before being written as a run.
+	 */
+	private final int bufferStates;
+	/**
+	 * The board being searched.
+	 */
+	private Board board;
+	/**
+	 * The packed tiles of the target state.
+	 */
+	private long target;
+	/**
+	 * Used to look at the tiles of a packed state without allocating.
+	 */
+	private final long[] scratch = new long[1];
+	/**
+	 * The statistics kept while searching.
+	 */
+	private SearchStats stats;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't.
+	 */
+	private SearchResult.Status stop;
+
+	/**
+	 * Creates a search that keeps its files in the directory given by the
+	 * <code>puzzle.ebfs.dir</code> system property (or the system's temporary
+	 * directory) and sorts the number of states given by the
+	 * <code>puzzle.ebfs.buffer</code> system property (or
+	 * <code>DEFAULT_BUFFER</code>) in memory at a time.
+	 */
+	public ExternalBreadthFirstSearch() {
+		this(new File(System.getProperty("puzzle.ebfs.dir",
+				System.getProperty("java.io.tmpdir"))), Integer.getInteger(
+				"puzzle.ebfs.buffer", DEFAULT_BUFFER));
+	}
+
+	/**
+	 * Creates a search that keeps its files in the given directory.
+	 *
+	 * @param directory
+	 *            The directory to make the search's own directory of layers
+	 *            in, which is deleted once the search is over.
+	 * @param bufferStates
+	 *            The number of states to sort in memory at a time.
+	 * @throws IllegalArgumentException
+	 *             if the buffer can't hold a state.
+	 */
+	public ExternalBreadthFirstSearch(File directory, int bufferStates) {
+		if (bufferStates < 1) {
+			throw new IllegalArgumentException(
+					"The sort buffer must hold at least one state.");
+		}
+		this.directory = directory;
+		this.bufferStates = bufferStates;
+	}
+
+	/**
+	 * Carries out the search.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search.
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 16 cells.
+	 * @throws UncheckedIOException
+	 *             if the layers couldn't be written or read.
+	 */
+	public SearchResult findPath(GridState initialState, GridState targetState) {
+		return findPath(initialState, targetState, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the search, stopping early if it reaches one of its limits.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search. If the
+	 *         search was stopped there is no partial path, as the layers on
+	 *         disk are only read back for the way to the target.
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 16 cells.
+	 * @throws UncheckedIOException
+	 *             if the layers couldn't be written or read.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, SearchLimits limits) {
+		stats = new SearchStats();
+		this.limits = limits;
+		stop = null;
+		board = initialState.getBoard();
+		if (board.getWordCount() != 1) {
+			throw new IllegalArgumentException(
+					"The external breadth first search can't search a "
+							+ board + " board, only boards of up to 16 cells.");
+		}
+		target = targetState.getWord(0);
+
+		File layerDirectory = null;
+		List<File> layers = new ArrayList<File>();
+		try {
+			layerDirectory = Files.createTempDirectory(directory.toPath(),
+					"ebfs").toFile();
+			layers.add(new File(layerDirectory, "layer-0.bin"));
+			try (RecordWriter writer = new RecordWriter(layers.get(0))) {
+				writer.write(initialState.getWord(0));
+			}
+			boolean found = initialState.getWord(0) == target;
+			long previousSize = 0;
+			long layerSize = 1;
+			stats.startSearch();
+
+			while (!found && stop == null && layerSize > 0) {
+				int depth = layers.size() - 1;
+				File next = new File(layerDirectory, "layer-" + (depth + 1)
+						+ ".bin");
+				long nextSize = expandLayer(layerDirectory, layers.get(depth),
+						depth > 0 ? layers.get(depth - 1) : null, next);
+				if (nextSize == FOUND) {
+					found = true;
+				} else if (stop == null) {
+					layers.add(next);
+					stats.updateOpenSize(nextSize);
+					stats.updateClosedSize(previousSize + layerSize + nextSize);
+					previousSize = layerSize;
+					layerSize = nextSize;
+				}
+			}
+
+			stats.startPath();
+			Path path = found ? buildPath(initialState, targetState, layers)
+					: null;
+			stats.finish();
+			if (stop != null) {
+				return new SearchResult(stop, null, -1, stats);
+			}
+			return new SearchResult(path, stats);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			delete(layerDirectory);
+		}
+	}
+
+	/**
+	 * Makes the next layer from the children of the current one.
+	 *
+	 * @param layerDirectory
+	 *            The directory the runs are written to.
+	 * @param layer
+	 *            The file of the current layer.
+	 * @param previous
+	 *            The file of the layer before, or null for the first layer.
+	 * @param next
+	 *            The file to write the next layer to.
+	 * @return the number of states in the next layer, or <code>FOUND</code>
+	 *         if the target was among the children, in which case the next
+	 *         layer isn't written. If the search reaches one of its limits it
+	 *         stops part way through the layer, and what is returned doesn't
+	 *         matter.
+	 * @throws IOException
+	 *             if a file couldn't be written or read.
+	 */
+	private long expandLayer(File layerDirectory, File layer, File previous,
+			File next) throws IOException {
+		List<File> runs = new ArrayList<File>();
+		long[] buffer = new long[bufferStates];
+		int buffered = 0;
+		try {
+			try (RecordReader reader = new RecordReader(layer)) {
+				while (reader.hasNext()) {
+					stop = limits.check(stats.getExpanded());
+					if (stop != null) {
+						return 0;
+					}
+					long tiles = reader.next();
+					int blankIndex = blankIndex(tiles);
+					stats.addExpanded();
+					for (int cell : board.getNeighbours(blankIndex)) {
+						scratch[0] = tiles;
+						board.moveBlank(scratch, blankIndex, cell);
+						stats.addGenerated();
+						if (scratch[0] == target) {
+							return FOUND;
+						}
+						if (buffered == buffer.length) {
+							runs.add(writeRun(layerDirectory, runs.size(),
+									buffer, buffered));
+							buffered = 0;
+						}
+						buffer[buffered++] = scratch[0];
+					}
+				}
+			}
+			if (buffered > 0) {
+				runs.add(writeRun(layerDirectory, runs.size(), buffer,
+						buffered));
+			}
+			// Lets go of the buffer before the merge, which needs only a
+			// block of each file.
+			buffer = null;
+			// Merges the runs in groups until few enough are left to be read
+			// at once.
+			int runNumber = runs.size();
+			while (runs.size() > MAXIMUM_FAN_IN) {
+				List<File> merged = new ArrayList<File>();
+				for (int i = 0; i < runs.size(); i += MAXIMUM_FAN_IN) {
+					List<File> group = runs.subList(i,
+							Math.min(runs.size(), i + MAXIMUM_FAN_IN));
+					File run = new File(layerDirectory, "run-" + runNumber++
+							+ ".bin");
+					merge(group, null, null, run);
+					merged.add(run);
+					for (File merging : group) {
+						merging.delete();
+					}
+				}
+				runs = merged;
+			}
+			return merge(runs, layer, previous, next);
+		} finally {
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	/**
+	 * Sorts the buffered children and writes them to a run, leaving out any
+	 * that appear more than once.
+	 *
+	 * @param layerDirectory
+	 *            The directory to write the run to.
+	 * @param number
+	 *            The number of the run within the layer.
+	 * @param buffer
+	 *            The children.
+	 * @param length
+	 *            The number of children in the buffer.
+	 * @return the file of the run.
+	 * @throws IOException
+	 *             if the run couldn't be written.
+	 */
+	private File writeRun(File layerDirectory, int number, long[] buffer,
+			int length) throws IOException {
+		Arrays.sort(buffer, 0, length);
+		File run = new File(layerDirectory, "run-" + number + ".bin");
+		try (RecordWriter writer = new RecordWriter(run)) {
+			for (int i = 0; i < length; i++) {
+				if (i > 0 && buffer[i] == buffer[i - 1]) {
+					stats.addDuplicate();
+				} else {
+					writer.write(buffer[i]);
+				}
+			}
+		}
+		return run;
+	}
+
+	/**
+	 * Merges sorted runs in to the next layer, or in to a larger run, leaving
+	 * out states that appear in more than one run or in the current or
+	 * previous layer.
+	 *
+	 * @param runs
+	 *            The files of the runs.
+	 * @param layer
+	 *            The file of the current layer, or null if merging in to a
+	 *            larger run.
+	 * @param previous
+	 *            The file of the layer before, or null for the first layer or
+	 *            if merging in to a larger run.
+	 * @param next
+	 *            The file to write the merged states to.
+	 * @return the number of states written.
+	 * @throws IOException
+	 *             if a file couldn't be written or read.
+	 */
+	private long merge(List<File> runs, File layer, File previous, File next)
+			throws IOException {
+		PriorityQueue<RecordReader> heads = new PriorityQueue<RecordReader>();
+		RecordReader current = null;
+		RecordReader before = null;
+		try {
+			for (File run : runs) {
+				RecordReader reader = new RecordReader(run);
+				if (reader.hasNext()) {
+					heads.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			current = layer == null ? null : new RecordReader(layer);
+			before = previous == null ? null : new RecordReader(previous);
+			try (RecordWriter writer = new RecordWriter(next)) {
+				boolean any = false;
+				long last = 0;
+				while (!heads.isEmpty()) {
+					RecordReader head = heads.poll();
+					long tiles = head.next();
+					if (head.hasNext()) {
+						heads.add(head);
+					} else {
+						head.close();
+					}
+					if ((any && tiles == last)
+							|| (current != null && current.skipTo(tiles))
+							|| (before != null && before.skipTo(tiles))) {
+						stats.addDuplicate();
+					} else {
+						writer.write(tiles);
+					}
+					any = true;
+					last = tiles;
+				}
+				return writer.getCount();
+			}
+		} finally {
+			for (RecordReader reader : heads) {
+				reader.close();
+			}
+			if (current != null) {
+				current.close();
+			}
+			if (before != null) {
+				before.close();
+			}
+		}
+	}
+
+	/**
+	 * Walks back from the target state to the initial state, finding at each
+	 * step the neighbour that is in the layer before.
+	 *
+	 * @param initialState
+	 *            The initial state.
+	 * @param targetState
+	 *            The target state.
+	 * @param layers
+	 *            The files of every layer up to the one before the target.
+	 * @return the path from the initial state to the target state.
+	 * @throws IOException
+	 *             if a layer couldn't be read.
+	 */
+	private Path buildPath(GridState initialState, GridState targetState,
+			List<File> layers) throws IOException {
+		int length = initialState.getWord(0) == target ? 0 : layers.size();
+		Path path = new Path(initialState, length);
+		long tiles = target;
+		int blankIndex = targetState.getBlankIndex();
+		for (int depth = length - 1; depth >= 0; depth--) {
+			try (FileChannel channel = FileChannel.open(layers.get(depth)
+					.toPath(), StandardOpenOption.READ)) {
+				for (int cell : board.getNeighbours(blankIndex)) {
+					scratch[0] = tiles;
+					board.moveBlank(scratch, blankIndex, cell);
+					if (contains(channel, scratch[0])) {
+						path.setMove(depth, Path.direction(board.getColumns(),
+								cell, blankIndex));
+						tiles = scratch[0];
+						blankIndex = cell;
+						break;
+					}
+				}
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Determines whether a layer holds a state, by a binary search of its
+	 * file.
+	 *
+	 * @param channel
+	 *            The file of the layer.
+	 * @param tiles
+	 *            The packed tiles of the state.
+	 * @return true if the state is in the layer.
+	 * @throws IOException
+	 *             if the file couldn't be read.
+	 */
+	private static boolean contains(FileChannel channel, long tiles)
+			throws IOException {
+		ByteBuffer word = ByteBuffer.allocate(Long.BYTES);
+		long low = 0;
+		long high = channel.size() / Long.BYTES - 1;
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			word.clear();
+			while (word.hasRemaining()) {
+				long position = middle * Long.BYTES + word.position();
+				if (channel.read(word, position) < 0) {
+					throw new IOException("Layer file ended early");
+				}
+			}
+			long found = word.getLong(0);
+			if (found < tiles) {
+				low = middle + 1;
+			} else if (found > tiles) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the cell the gap is in.
+	 *
+	 * @param tiles
+	 *            The packed tiles of a state.
+	 * @return the row-major index of the cell containing the gap (zero).
+	 */
+	private int blankIndex(long tiles) {
+		scratch[0] = tiles;
+		for (int cell = 0; cell < board.getCellCount(); cell++) {
+			if (board.getTile(scratch, cell) == 0) {
+				return cell;
+			}
+		}
+		throw new IllegalStateException("A state has no gap");
+	}
+
+	/**
+	 * Deletes the search's directory and every file in it.
+	 *
+	 * @param layerDirectory
+	 *            The directory, or null if it was never made.
+	 */
+	private static void delete(File layerDirectory) {
+		if (layerDirectory == null) {
+			return;
+		}
+		File[] files = layerDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		layerDirectory.delete();
+	}
+
+	/**
+	 * Writes packed states to a file a block at a time.
+	 */
+	private static class RecordWriter implements AutoCloseable {
+		/**
+		 * The file being written.
+		 */
+		private final FileChannel channel;
+		/**
+		 * The block waiting to be written.
+		 */
+		private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+		/**
+		 * The number of states written.
+		 */
+		private long count = 0;
+
+		/**
+		 * Creates the file, replacing any file already there.
+		 *
+		 * @param file
+		 *            The file to write.
+		 * @throws IOException
+		 *             if the file couldn't be created.
+		 */
+		private RecordWriter(File file) throws IOException {
+			channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		/**
+		 * Writes a state.
+		 *
+		 * @param tiles
+		 *            The packed tiles of the state.
+		 * @throws IOException
+		 *             if the block couldn't be written.
+		 */
+		private void write(long tiles) throws IOException {
+			if (!block.hasRemaining()) {
+				flush();
+			}
+			block.putLong(tiles);
+			count++;
+		}
+
+		/**
+		 * Returns the number of states written.
+		 *
+		 * @return the number of states.
+		 */
+		private long getCount() {
+			return count;
+		}
+
+		/**
+		 * Writes out the block.
+		 *
+		 * @throws IOException
+		 *             if the block couldn't be written.
+		 */
+		private void flush() throws IOException {
+			block.flip();
+			while (block.hasRemaining()) {
+				channel.write(block);
+			}
+			block.clear();
+		}
+
+		/**
+		 * Writes out the last block and closes the file.
+		 *
+		 * @throws IOException
+		 *             if the block couldn't be written.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads packed states from a file in order, a block at a time, and can be
+	 * ordered by the state it will read next so that many files can be
+	 * merged.
+	 */
+	private static class RecordReader implements AutoCloseable,
+			Comparable<RecordReader> {
+		/**
+		 * The file being read.
+		 */
+		private final FileChannel channel;
+		/**
+		 * The block being read from.
+		 */
+		private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+		/**
+		 * The state that will be read next, if <code>hasHead</code>.
+		 */
+		private long head;
+		/**
+		 * Whether there is a state left to read.
+		 */
+		private boolean hasHead;
+
+		/**
+		 * Opens the file and reads the first state.
+		 *
+		 * @param file
+		 *            The file to read.
+		 * @throws IOException
+		 *             if the file couldn't be read.
+		 */
+		private RecordReader(File file) throws IOException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			block.limit(0);
+			advance();
+		}
+
+		/**
+		 * Determines whether there is a state left to read.
+		 *
+		 * @return true if there is another state.
+		 */
+		private boolean hasNext() {
+			return hasHead;
+		}
+
+		/**
+		 * Reads the next state.
+		 *
+		 * @return the packed tiles of the state.
+		 * @throws IOException
+		 *             if the file couldn't be read.
+		 */
+		private long next() throws IOException {
+			long tiles = head;
+			advance();
+			return tiles;
+		}
+
+		/**
+		 * Skips the states that come before the given state, and determines
+		 * whether the file holds it. Calls must be in increasing order.
+		 *
+		 * @param tiles
+		 *            The packed tiles of the state.
+		 * @return true if the file holds the state.
+		 * @throws IOException
+		 *             if the file couldn't be read.
+		 */
+		private boolean skipTo(long tiles) throws IOException {
+			while (hasHead && head < tiles) {
+				advance();
+			}
+			return hasHead && head == tiles;
+		}
+
+		/**
+		 * Reads the state after the head, refilling the block if it is empty.
+		 *
+		 * @throws IOException
+		 *             if the file couldn't be read.
+		 */
+		private void advance() throws IOException {
+			if (block.remaining() < Long.BYTES) {
+				block.compact();
+				while (block.position() < Long.BYTES
+						&& channel.read(block) >= 0) {
+					// Keeps reading until there is a whole state or the file
+					// has ended.
+				}
+				block.flip();
+			}
+			hasHead = block.remaining() >= Long.BYTES;
+			if (hasHead) {
+				head = block.getLong();
+			}
+		}
+
+		/**
+		 * Closes the file.
+		 *
+		 * @throws IOException
+		 *             if the file couldn't be closed.
+		 */
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		/**
+		 * Orders readers by the state they will read next.
+		 *
+		 * @param other
+		 *            The reader to compare with.
+		 * @return a negative number if this reader's next state comes first.
+		 */
+		@Override
+		public int compareTo(RecordReader other) {
+			return Long.compare(head, other.head);
+		}
+	}
+}
@@ -1,19 +1,21 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * The class that handles all the loading in of files from the file system.
  * 
+ * A file holds one row of the puzzle per line, with the tiles on each row
+ * separated by commas. The size of the board is taken from the file, so any
+ * rectangular puzzle can be loaded.
+ * 
  * @author Dale Peters (dmp9@aber.ac.uk)
  * 
  */
 public class FileIO {
-	/**
-	 * The number of lines the files contain.
-	 */
-	private static final int NUMBER_OF_LINES_IN_FILE = 3;
 	/**
 	 * Used to hold the initial (starting) state of the puzzle.
 	 */
@@ -37,49 +39,70 @@ public class FileIO {
 	 *            <code>startState</code> variable. If it is "target", it will
 	 *            store it in the <code>targetState</code> variable.
 	 * @throws FileNotFoundException
+	 * @throws IllegalArgumentException
+	 *             if the file does not hold a valid puzzle.
 	 */
 	public void readFile(String fileName, String mode)
 			throws FileNotFoundException {
 		Scanner fileReader = new Scanner(new InputStreamReader(
 				new FileInputStream(fileName)));
-		char[][] lines = new char[3][3];
-		for (int i = 0; i < NUMBER_OF_LINES_IN_FILE; i++) {
-			String documentLine = fileReader.nextLine();
-
-			// We are not interested in the commas in the file, so only get
-			// the non-comma characters.
-			char char1 = documentLine.charAt(0);
-			char char2 = documentLine.charAt(2);
-			char char3 = documentLine.charAt(4);
-			char[] line = { char1, char2, char3 };
-
-			// To confirm the initial and target states that were loaded in to
-			// the user.
-			if (mode.equals("initial") && i == 0) {
-				System.out.println("INITIAL STATE");
+		List<String> lines = new ArrayList<String>();
+		while (fileReader.hasNextLine()) {
+			String documentLine = fileReader.nextLine().trim();
+			if (!documentLine.isEmpty()) {
+				lines.add(documentLine);
 			}
-			if (mode.equals("target") && i == 0) {
-				System.out.println("TARGET STATE");
-			}
-			System.out.print(char1);
-			System.out.print(char2);
-			System.out.print(char3);
+		}
+		fileReader.close();
 
-			// Puts each 1D array in to the 2D array of characters.
-			lines[i] = line;
+		GridState state = parseState(lines);
 
-			// If it's the grid to represent the initial state, stores the 2D
-			// array in the startState variable, else stores it in the
-			// targetState variable.
-			if (mode.equals("initial")) {
-				startState = new GridState(lines);
-				startState.setParentState(null);
-			} else if (mode.equals("target")) {
-				targetState = new GridState(lines);
+		// If it's the grid to represent the initial state, stores it in the
+		// startState variable, else stores it in the targetState variable.
+		if (mode.equals("initial")) {
+			startState = state;
+			startState.setParentState(null);
+		} else if (mode.equals("target")) {
+			targetState = state;
+		}
+	}
+
+	/**
+	 * Parses the rows of a puzzle, one row per line with the tiles separated
+	 * by commas, in to a state on a board of the matching size.
+	 * 
+	 * @param lines
+	 *            The rows of the puzzle.
+	 * @return the state the lines describe.
+	 * @throws IllegalArgumentException
+	 *             if the rows are of different lengths or the tiles are not
+	 *             the numbers from zero up to one less than the number of
+	 *             cells.
+	 */
+	public static GridState parseState(List<String> lines) {
+		if (lines.isEmpty()) {
+			throw new IllegalArgumentException("The puzzle has no rows.");
+		}
+		int rows = lines.size();
+		int columns = lines.get(0).split(",").length;
+		int[] cells = new int[rows * columns];
+		for (int i = 0; i < rows; i++) {
+			String[] tiles = lines.get(i).split(",");
+			if (tiles.length != columns) {
+				throw new IllegalArgumentException("Row " + (i + 1) + " has "
+						+ tiles.length + " tiles but row 1 has " + columns
+						+ ".");
+			}
+			for (int j = 0; j < columns; j++) {
+				try {
+					cells[i * columns + j] = Integer.parseInt(tiles[j].trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("\"" + tiles[j].trim()
+							+ "\" on row " + (i + 1) + " is not a tile.");
+				}
 			}
-			System.out.println();
 		}
-		fileReader.close();
+		return new Board(rows, columns).createState(cells);
 	}
 
 	/**
@@ -1,25 +1,49 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The class to represent a single state of the puzzle at any one time.
  * 
+ * The tiles are packed in to <code>long</code> words in row-major order, as
+ * laid out by the state's <code>Board</code>, and the index of the gap (zero)
+ * is cached so that moving it is a swap of two bit fields rather than a search
+ * of the grid.
+ * 
  * @author Dale Peters (dmp9@aber.ac.uk)
  * 
  */
-public class GridState implements Cloneable, Comparable<Object> {
+public class GridState {
 
 	/**
-	 * The number of rows the 8-puzzle has.
+	 * The direction that moves the gap (zero) upwards.
+	 */
+	public static final int UP = 0;
+	/**
+	 * The direction that moves the gap (zero) downwards.
 	 */
-	private static final int NUMBER_OF_ROWS = 3;
+	public static final int DOWN = 1;
 	/**
-	 * The number of columns the 8-puzzle has.
+	 * The direction that moves the gap (zero) leftwards.
 	 */
-	private static final int NUMBER_OF_COLUMNS = 3;
+	public static final int LEFT = 2;
 	/**
-	 * The characters in the puzzle.
+	 * The direction that moves the gap (zero) rightwards.
 	 */
-	private char[][] grid = new char[NUMBER_OF_ROWS][NUMBER_OF_COLUMNS];
+	public static final int RIGHT = 3;
+
+	/**
+	 * The shape of the puzzle the state belongs to.
+	 */
+	private final Board board;
+	/**
+	 * The numbers on the tiles in the puzzle, packed in row-major order with
+	 * cell 0 (the top left) in the lowest bits of the first word.
+	 */
+	private final long[] tiles;
+	/**
+	 * The index (in row-major order) of the cell containing the gap (zero).
+	 */
+	private int blankIndex;
 	/**
 	 * All the possible states that can be reached from the current state.
 	 */
@@ -40,38 +64,82 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * The value of the cost of the <code>GridState</code> object.
 	 */
 	private int cost;
+	/**
+	 * The index of the state within its bucket of the A* open list, or -1 if
+	 * it is not in the open list.
+	 */
+	private int openListIndex = -1;
 
 	/**
 	 * Creates an instance of the GridState class.
 	 * 
-	 * @param grid
-	 *            The 2D character array to represent the numbers on the tiles
-	 *            in the puzzle.
+	 * @param board
+	 *            The shape of the puzzle the state belongs to.
+	 * @param tiles
+	 *            The numbers on the tiles in the puzzle, packed as laid out by
+	 *            the board. The state takes ownership of the array.
+	 * @param blankIndex
+	 *            The row-major index of the cell containing the gap (zero).
+	 */
+	public GridState(Board board, long[] tiles, int blankIndex) {
+		this.board = board;
+		this.tiles = tiles;
+		this.blankIndex = blankIndex;
+	}
+
+	/**
+	 * Returns the shape of the puzzle the state belongs to.
+	 * 
+	 * @return the state's board.
 	 */
-	public GridState(char[][] grid) {
-		this.grid = grid;
+	public Board getBoard() {
+		return board;
 	}
-	
+
 	/**
-	 * Sets the <code>grid</code> instance variable of the GridState object.
+	 * Returns one word of the packed representation of the tiles.
 	 * 
-	 * @param grid
-	 *            The 2D char array to set the variable to.
+	 * @param index
+	 *            The index of the word, less than the board's word count.
+	 * @return the packed tiles in that word.
 	 */
-	public void setGrid(char[][] grid) {
-		this.grid = grid;
+	public long getWord(int index) {
+		return tiles[index];
 	}
 
 	/**
-	 * Returns the GridState object's 2D array, stored in the <code>grid</code>
-	 * variable.
+	 * Returns the row-major index of the cell containing the gap (zero).
 	 * 
-	 * @return
+	 * @return the index of the cell containing the gap (zero).
 	 */
-	public char[][] getGrid() {
-		return this.grid;
+	public int getBlankIndex() {
+		return blankIndex;
 	}
-	
+
+	/**
+	 * Returns the number on the tile in the given cell.
+	 * 
+	 * @param index
+	 *            The row-major index of the cell.
+	 * @return the number on the tile in the cell, zero for the gap.
+	 */
+	public int getTile(int index) {
+		return board.getTile(tiles, index);
+	}
+
+	/**
+	 * Returns the number on the tile at the given row and column.
+	 * 
+	 * @param row
+	 *            The row of the cell.
+	 * @param column
+	 *            The column of the cell.
+	 * @return the number on the tile in the cell, zero for the gap.
+	 */
+	public int getTile(int row, int column) {
+		return getTile(row * board.getColumns() + column);
+	}
+
 	/**
 	 * Sets the cost of the gridState object.
 	 * 
@@ -91,6 +159,27 @@ public class GridState implements Cloneable, Comparable<Object> {
 		return cost;
 	}
 
+	/**
+	 * Returns the index of the state within its bucket of the A* open list.
+	 * 
+	 * @return the index of the state in its bucket, or -1 if it is not in the
+	 *         open list.
+	 */
+	public int getOpenListIndex() {
+		return openListIndex;
+	}
+
+	/**
+	 * Sets the index of the state within its bucket of the A* open list.
+	 * 
+	 * @param openListIndex
+	 *            the index of the state in its bucket, or -1 if it has been
+	 *            taken out of the open list.
+	 */
+	public void setOpenListIndex(int openListIndex) {
+		this.openListIndex = openListIndex;
+	}
+
 	/**
 	 * Returns the cost it took to get to the state.
 	 * 
@@ -169,12 +258,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * @return false if the gap (zero) can't move upwards in the grid.
 	 */
 	public boolean canMoveUp() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			if (grid[0][i] == '0') {
-				return false;
-			}
-		}
-		return true;
+		return blankIndex >= board.getColumns();
 	}
 
 	/**
@@ -185,12 +269,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * @return false if the gap (zero) can't move downwards in the grid.
 	 */
 	public boolean canMoveDown() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			if (grid[2][i] == '0') {
-				return false;
-			}
-		}
-		return true;
+		return blankIndex < board.getCellCount() - board.getColumns();
 	}
 
 	/**
@@ -201,12 +280,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * @return false if the gap (zero) can't move leftwards in the grid.
 	 */
 	public boolean canMoveLeft() {
-		for (int i = 0; i < NUMBER_OF_COLUMNS; i++) {
-			if (grid[i][0] == '0') {
-				return false;
-			}
-		}
-		return true;
+		return blankIndex % board.getColumns() != 0;
 	}
 
 	/**
@@ -217,12 +291,65 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * @return false if the gap (zero) can't move rightwards in the grid.
 	 */
 	public boolean canMoveRight() {
-		for (int i = 0; i < NUMBER_OF_COLUMNS; i++) {
-			if (grid[i][2] == '0') {
-				return false;
-			}
+		return blankIndex % board.getColumns() != board.getColumns() - 1;
+	}
+
+	/**
+	 * Determines whether the gap (zero) can move in the given direction.
+	 * 
+	 * @param direction
+	 *            One of <code>UP</code>, <code>DOWN</code>, <code>LEFT</code>
+	 *            or <code>RIGHT</code>.
+	 * @return false if the gap (zero) can't move that way in the grid.
+	 */
+	public boolean canMove(int direction) {
+		switch (direction) {
+		case UP:
+			return canMoveUp();
+		case DOWN:
+			return canMoveDown();
+		case LEFT:
+			return canMoveLeft();
+		default:
+			return canMoveRight();
 		}
-		return true;
+	}
+
+	/**
+	 * Moves the gap (zero) one cell in the given direction, which must be
+	 * possible.
+	 * 
+	 * @param direction
+	 *            One of <code>UP</code>, <code>DOWN</code>, <code>LEFT</code>
+	 *            or <code>RIGHT</code>.
+	 */
+	public void moveZero(int direction) {
+		switch (direction) {
+		case UP:
+			moveZeroUp();
+			break;
+		case DOWN:
+			moveZeroDown();
+			break;
+		case LEFT:
+			moveZeroLeft();
+			break;
+		default:
+			moveZeroRight();
+			break;
+		}
+	}
+
+	/**
+	 * Returns the direction that undoes a move in the given direction.
+	 * 
+	 * @param direction
+	 *            One of <code>UP</code>, <code>DOWN</code>, <code>LEFT</code>
+	 *            or <code>RIGHT</code>.
+	 * @return the opposite direction.
+	 */
+	public static int opposite(int direction) {
+		return direction ^ 1;
 	}
 
 	/**
@@ -230,17 +357,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * tile to the right of it to the place where the zero was originally.
 	 */
 	public void moveZeroRight() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				// If zero not in 3rd column
-				if (grid[i][j] == '0') {
-					char tempChar = grid[i][j + 1];
-					grid[i][j + 1] = '0';
-					grid[i][j] = tempChar;
-					return;
-				}
-			}
-		}
+		moveZeroTo(blankIndex + 1);
 	}
 
 	/**
@@ -248,17 +365,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * tile to the left of it to the place where the zero was originally.
 	 */
 	public void moveZeroLeft() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				// If zero not in 1st column
-				if (grid[i][j] == '0') {
-					char tempChar = grid[i][j - 1];
-					grid[i][j - 1] = '0';
-					grid[i][j] = tempChar;
-					return;
-				}
-			}
-		}
+		moveZeroTo(blankIndex - 1);
 	}
 
 	/**
@@ -266,16 +373,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * above it to the place where the zero was originally.
 	 */
 	public void moveZeroUp() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				if (grid[i][j] == '0') {
-					char tempChar = grid[i - 1][j];
-					grid[i - 1][j] = '0';
-					grid[i][j] = tempChar;
-					return;
-				}
-			}
-		}
+		moveZeroTo(blankIndex - board.getColumns());
 	}
 
 	/**
@@ -283,38 +381,68 @@ public class GridState implements Cloneable, Comparable<Object> {
 	 * below it to the place where the zero was originally.
 	 */
 	public void moveZeroDown() {
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				if (grid[i][j] == '0') {
-					char tempChar = grid[i + 1][j];
-					grid[i + 1][j] = '0';
-					grid[i][j] = tempChar;
-					return;
-				}
-			}
-		}
+		moveZeroTo(blankIndex + board.getColumns());
+	}
+
+	/**
+	 * Swaps the gap (zero) with the tile in the given cell.
+	 * 
+	 * @param index
+	 *            The row-major index of the cell the gap moves to.
+	 */
+	private void moveZeroTo(int index) {
+		board.moveBlank(tiles, blankIndex, index);
+		blankIndex = index;
 	}
 
 	/**
-	 * Determines if the 2D array of one GridState object is equal to that of
+	 * Determines if the tiles of one GridState object are equal to those of
 	 * another by overriding the <code>equals</code> method in the Java API. It
 	 * tests the deep equality of two objects, rather than the shallow equality
 	 * that is tested by the <code>equals</code> method provided in the Object
 	 * class of the Java API.
 	 * 
-	 * @return true if the two 2D char arrays are the same.
+	 * @return true if the two packed grids are the same.
 	 */
 	@Override
 	public boolean equals(Object obj) {
+		if (!(obj instanceof GridState)) {
+			return false;
+		}
 		GridState other = (GridState) obj;
-		for (int i = 0; i < this.grid.length; i++) {
-			for (int j = 0; j < this.grid[i].length; j++) {
-				if (this.grid[i][j] != other.grid[i][j]) {
-					return false;
-				}
-			}
+		return board.equals(other.board)
+				&& Arrays.equals(this.tiles, other.tiles);
+	}
+
+	/**
+	 * Returns a hash code for the state based on its packed tiles, so that it
+	 * is consistent with <code>equals</code>.
+	 * 
+	 * @return a hash code for the state.
+	 */
+	@Override
+	public int hashCode() {
+		return hashWords(tiles, 0, tiles.length);
+	}
+
+	/**
+	 * Hashes a run of packed words, so that structures holding states as
+	 * packed words rather than objects hash them the same way.
+	 * 
+	 * @param words
+	 *            The array holding the packed words.
+	 * @param offset
+	 *            The index of the first word of the state.
+	 * @param length
+	 *            The number of words the state takes up.
+	 * @return the hash code of the state.
+	 */
+	public static int hashWords(long[] words, int offset, int length) {
+		long hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash + words[i]) * 0x9E3779B97F4A7C15L;
 		}
-		return true;
+		return (int) (hash ^ (hash >>> 32));
 	}
 
 	/**
@@ -326,7 +454,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 	public void generateChildren() {
 		if (canMoveUp()) {
 			// Create child with grid same as parent
-			GridState upChild = new GridState(this.clone());
+			GridState upChild = copy();
 			// Swap zero in grid with the number above it in the grid
 			upChild.moveZeroUp();
 			upChild.setParentState(this);
@@ -336,7 +464,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 		if (canMoveLeft()) {
 
 			// Create child with grid identical to that of the parent
-			GridState leftChild = new GridState(this.clone());
+			GridState leftChild = copy();
 			leftChild.setParentState(this);
 			// Swap the zero in the grid with the number to the left of it
 			leftChild.moveZeroLeft();
@@ -345,7 +473,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 		}
 		if (canMoveRight()) {
 			// Create child with grid identical to that of the parent
-			GridState rightChild = new GridState(this.clone());
+			GridState rightChild = copy();
 
 			rightChild.setParentState(this);
 
@@ -356,7 +484,7 @@ public class GridState implements Cloneable, Comparable<Object> {
 		}
 		if (canMoveDown()) {
 			// Create child with grid identical to that of the parent
-			GridState downChild = new GridState(this.clone());
+			GridState downChild = copy();
 			// Swap the zero in the grid with the number below it
 			downChild.moveZeroDown();
 			downChild.setParentState(this);
@@ -366,54 +494,49 @@ public class GridState implements Cloneable, Comparable<Object> {
 	}
 
 	/**
-	 * Used to clone the 2D char array stored in the <code>grid</code> variable
-	 * for the particular <code>GridState</code> object.
-	 * 
-	 * Overrides the <code>clone</code> method that is provided in the Object
-	 * class of the Java API so the actual grid is cloned.
+	 * Creates a new state with the same tiles as this one, but none of its
+	 * parent, children or costs.
 	 * 
-	 * @return The cloned 2D array
+	 * @return a copy of the state's tiles.
 	 */
-	@Override
-	public char[][] clone() {
-		char[][] newGrid = new char[NUMBER_OF_ROWS][NUMBER_OF_COLUMNS];
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				newGrid[i][j] = this.grid[i][j];
-			}
-		}
-		return newGrid;
+	public GridState copy() {
+		return new GridState(board, tiles.clone(), blankIndex);
 	}
 
 	/**
-	 * Returns a string representation of the <code>grid</code> instance
-	 * variable so that the path can be printed.
+	 * Returns a string representation of the packed tiles so that the path can
+	 * be printed, one row per line.
 	 * 
-	 * @return a string representation of the <code>grid</code> instance
+	 * @return a string representation of the <code>tiles</code> instance
 	 *         variable.
 	 */
 	public String toString() {
-		String stringRepresentation = "";
-		for (int i = 0; i < NUMBER_OF_ROWS; i++) {
-			for (int j = 0; j < NUMBER_OF_COLUMNS; j++) {
-				stringRepresentation += grid[i][j];
-			}
-			stringRepresentation += "\n";
-		}
-		return stringRepresentation;
+		StringBuilder stringRepresentation = new StringBuilder(
+				board.getCellCount() * 3 + board.getRows());
+		appendTo(stringRepresentation);
+		return stringRepresentation.toString();
 	}
 
 	/**
-	 * Compares <code>this</code> gridState object to another. Written for the
-	 * purpose of sorting the GridState objects in the AStarSearch class.
-	 * Overrides the compareTo method in the Object class of the Java API.
+	 * Appends the tiles to a string being built, one row per line, in the
+	 * same form as <code>toString</code>, so that many states can be written
+	 * without making a string for each.
 	 * 
-	 * @param o
-	 *            The object to compare <code>this</code> gridState object to.
-	 */
-	@Override
-	public int compareTo(Object o) {
-		GridState other = (GridState) o;
-		return cost - other.cost;
+	 * @param builder
+	 *            The string being built.
+	 */
+	public void appendTo(StringBuilder builder) {
+		// Tiles are written as digits when they are all single digits, as in
+		// the 8-puzzle, and comma separated otherwise.
+		boolean separate = board.getCellCount() > 10;
+		for (int i = 0; i < board.getRows(); i++) {
+			for (int j = 0; j < board.getColumns(); j++) {
+				if (separate && j > 0) {
+					builder.append(',');
+				}
+				builder.append(getTile(i, j));
+			}
+			builder.append('\n');
+		}
 	}
 }
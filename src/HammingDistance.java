@@ -0,0 +1,64 @@
+/**
+ * The Hamming Distance heuristic: the number of tiles not in the place where
+ * they should be, according to the target state. The gap (zero) isn't counted,
+ * so the estimate never exceeds the real number of moves needed.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class HammingDistance implements Heuristic {
+	/**
+	 * targetCells[tile] holds the index of the cell the tile occupies in the
+	 * target state.
+	 */
+	private final int[] targetCells;
+
+	/**
+	 * Creates the heuristic for the given target state.
+	 * 
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 */
+	public HammingDistance(GridState target) {
+		targetCells = new int[target.getBoard().getCellCount()];
+		for (int cell = 0; cell < targetCells.length; cell++) {
+			targetCells[target.getTile(cell)] = cell;
+		}
+	}
+
+	/**
+	 * Calculates the number of tiles in the particular state that are out of
+	 * place from the target state.
+	 * 
+	 * @param state
+	 *            The state to calculate the number of misplaced tiles for.
+	 * @return The number of misplaced tiles in the state.
+	 */
+	@Override
+	public int estimate(GridState state) {
+		int tilesOutOfPlace = 0;
+		for (int cell = 0; cell < targetCells.length; cell++) {
+			int tile = state.getTile(cell);
+			if (tile != 0 && targetCells[tile] != cell) {
+				tilesOutOfPlace++;
+			}
+		}
+		return tilesOutOfPlace;
+	}
+
+	/**
+	 * Only the tile that slid can have moved in to or out of its place.
+	 */
+	@Override
+	public int estimateAfterMove(int parentEstimate, GridState state,
+			int from, int to) {
+		int targetCell = targetCells[state.getTile(to)];
+		if (targetCell == from) {
+			return parentEstimate + 1;
+		}
+		if (targetCell == to) {
+			return parentEstimate - 1;
+		}
+		return parentEstimate;
+	}
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An estimate of the number of moves it will take to get from a state of the
+ * puzzle to the target state, used by the A Star (A*) search algorithm to
+ * decide which state to work on next.
+ * 
+ * Implementations are built once for a particular target state and can then
+ * be updated as each single tile slides, rather than evaluated from scratch
+ * for every state.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public interface Heuristic {
+
+	/**
+	 * Estimates the number of moves to get from the state to the target.
+	 * 
+	 * @param state
+	 *            The state to estimate the cost for.
+	 * @return the estimated cost to get to the target state.
+	 */
+	int estimate(GridState state);
+
+	/**
+	 * Estimates the number of moves to get from the state to the target, given
+	 * the estimate for the state it was reached from by sliding one tile.
+	 * 
+	 * @param parentEstimate
+	 *            The estimate for the state before the tile moved.
+	 * @param state
+	 *            The state after the tile moved.
+	 * @param from
+	 *            The index of the cell the tile moved from, where the gap
+	 *            (zero) now is.
+	 * @param to
+	 *            The index of the cell the tile moved to, where the gap (zero)
+	 *            used to be.
+	 * @return the estimated cost to get to the target state.
+	 */
+	int estimateAfterMove(int parentEstimate, GridState state, int from, int to);
+
+	/**
+	 * Creates the heuristic with the given name for the given target state.
+	 * 
+	 * @param name
+	 *            The name of the heuristic, one of "hamming", "manhattan",
+	 *            "linear" (the Manhattan Distance with linear conflicts),
+	 *            "walking" (the walking distance) or "pdb" (the additive
+	 *            pattern database heuristic).
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 * @return the heuristic.
+	 * @throws IllegalArgumentException
+	 *             if there is no heuristic with the given name.
+	 */
+	static Heuristic forName(String name, GridState target) {
+		switch (name) {
+		case "hamming":
+			return new HammingDistance(target);
+		case "manhattan":
+			return new ManhattanDistance(target);
+		case "linear":
+			return new LinearConflict(target);
+		case "walking":
+			return new WalkingDistance(target);
+		case "pdb":
+			try {
+				return PatternDatabaseHeuristic.forTarget(target);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		default:
+			throw new IllegalArgumentException("Unknown heuristic: " + name);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+import java.util.Arrays;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out the Iterative Deepening A Star (IDA*) search algorithm on the puzzle to
+ * be solved.
+ * 
+ * Unlike <code>AStarSearch</code>, which keeps every state it generates, this
+ * works on a single <code>GridState</code> that is moved and moved back in
+ * place as the search goes deeper and backtracks, so no objects are created
+ * per node and the memory used only grows with the length of the solution.
+ * The move that would undo the previous one is never tried.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ */
+public class IterativeDeepeningAStarSearch {
+	/**
+	 * Marks that there was no previous move, at the root of the search.
+	 */
+	private static final int NO_MOVE = -1;
+	/**
+	 * Returned by <code>search</code> when the search's limits stop it.
+	 */
+	private static final int STOPPED = -2;
+	/**
+	 * The state being searched, moved in place as the search goes.
+	 */
+	private GridState board;
+	/**
+	 * The state the algorithm is trying to reach.
+	 */
+	private GridState targetState;
+	/**
+	 * The heuristic used to estimate the cost to the target.
+	 */
+	private Heuristic heuristic;
+	/**
+	 * The directions the gap (zero) has moved in from the start to the state
+	 * currently being worked on.
+	 */
+	private int[] moves;
+	/**
+	 * The lowest total cost that was over the threshold in the current
+	 * iteration, which becomes the threshold for the next one.
+	 */
+	private int nextThreshold;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't.
+	 */
+	private SearchResult.Status stop;
+	/**
+	 * The moves to the state with the lowest estimate reached, for a search
+	 * that is stopped before it reaches the target.
+	 */
+	private int[] closestMoves = new int[0];
+	/**
+	 * The estimate for the state with the lowest estimate reached.
+	 */
+	private int closestEstimate;
+	/**
+	 * The statistics kept while searching. The open list size is the depth of
+	 * the search, as only the states on the current path are held, and there
+	 * is no closed set.
+	 */
+	private SearchStats stats;
+
+	/**
+	 * Carries out the IDA* search algorithm in order to find the shortest
+	 * path from the Initial State to the Target State. Each iteration is a
+	 * depth first search that cuts off any state whose cost plus the heuristic
+	 * estimate is over a threshold, starting from the estimate for the start
+	 * state and raising it to the lowest cost that was cut off each time.
+	 * 
+	 * As the threshold would otherwise be raised forever, the search is not
+	 * started at all if the target can't be reached from the start state.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @return The path the algorithm generated from the starting state to the
+	 *         goal state, or no path if the target can't be reached, with the
+	 *         statistics of the search.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic) {
+		return findPath(startState, targetState, heuristic, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the IDA* search algorithm, stopping early if it reaches one
+	 * of its limits.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return The path the algorithm generated from the starting state to the
+	 *         goal state, or no path if the target can't be reached, with the
+	 *         statistics of the search. If the search was stopped, the partial
+	 *         path leads to the state with the lowest estimate it reached.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, SearchLimits limits) {
+		this.limits = limits;
+		stop = null;
+		stats = new SearchStats();
+		if (!Solvability.isSolvable(startState, targetState)) {
+			stats.startSearch();
+			stats.startPath();
+			stats.finish();
+			return new SearchResult(null, stats);
+		}
+		this.targetState = targetState;
+		this.heuristic = Heuristic.forName(heuristic, targetState);
+		this.board = startState.copy();
+		stats.startSearch();
+
+		int estimate = this.heuristic.estimate(board);
+		closestEstimate = estimate;
+		closestMoves = new int[0];
+		int threshold = estimate;
+		while (true) {
+			nextThreshold = Integer.MAX_VALUE;
+			moves = new int[threshold + 1];
+			int depth = search(0, estimate, threshold, NO_MOVE);
+			if (depth == STOPPED) {
+				stats.startPath();
+				moves = closestMoves;
+				Path partial = replay(startState, closestMoves.length);
+				stats.finish();
+				return new SearchResult(stop, partial, closestEstimate, stats);
+			}
+			if (depth >= 0) {
+				stats.startPath();
+				Path path = replay(startState, depth);
+				stats.finish();
+				return new SearchResult(path, stats);
+			}
+			threshold = nextThreshold;
+		}
+	}
+
+	/**
+	 * Searches depth first from the current state of the board, cutting off
+	 * at the threshold. On return the board is back as it was when called.
+	 * 
+	 * @param costToGetToState
+	 *            The number of moves made from the start state.
+	 * @param estimate
+	 *            The heuristic estimate for the current state of the board.
+	 * @param threshold
+	 *            The largest total cost that will be searched.
+	 * @param previousMove
+	 *            The direction the gap moved in to get here, or
+	 *            <code>NO_MOVE</code> at the start state.
+	 * @return the number of moves to the target if it was found,
+	 *         <code>STOPPED</code> if the search's limits stopped it,
+	 *         otherwise -1.
+	 */
+	private int search(int costToGetToState, int estimate, int threshold,
+			int previousMove) {
+		int cost = costToGetToState + estimate;
+		if (cost > threshold) {
+			if (cost < nextThreshold) {
+				nextThreshold = cost;
+			}
+			return -1;
+		}
+		// An admissible heuristic is zero at the target, so only compare the
+		// board when it is.
+		if (estimate == 0 && board.equals(targetState)) {
+			return costToGetToState;
+		}
+		if (estimate < closestEstimate) {
+			closestEstimate = estimate;
+			closestMoves = Arrays.copyOf(moves, costToGetToState);
+		}
+		stop = limits.check(stats.getExpanded());
+		if (stop != null) {
+			return STOPPED;
+		}
+		stats.addExpanded();
+		stats.updateOpenSize(costToGetToState + 1);
+
+		for (int direction = GridState.UP; direction <= GridState.RIGHT; direction++) {
+			if (!board.canMove(direction)) {
+				continue;
+			}
+			// Undoing the previous move would only lead back to its parent.
+			if (previousMove != NO_MOVE
+					&& direction == GridState.opposite(previousMove)) {
+				stats.addDuplicate();
+				continue;
+			}
+			stats.addGenerated();
+			// The tile moves from where the gap goes to where it was.
+			int to = board.getBlankIndex();
+			board.moveZero(direction);
+			int from = board.getBlankIndex();
+			moves[costToGetToState] = direction;
+
+			int depth = search(costToGetToState + 1,
+					heuristic.estimateAfterMove(estimate, board, from, to),
+					threshold, direction);
+			board.moveZero(GridState.opposite(direction));
+			if (depth != -1) {
+				return depth;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds the path from the moves that were found.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param length
+	 *            The number of moves in the solution.
+	 * @return the path from the start state to the target.
+	 */
+	private Path replay(GridState startState, int length) {
+		Path path = new Path(startState);
+		for (int i = 0; i < length; i++) {
+			path.addToEnd(moves[i]);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+
+/**
+ * The Manhattan Distance heuristic with linear conflicts: two tiles that are
+ * both in the row (or column) they belong in, but the wrong way round, can't
+ * pass each other without one of them leaving the line and coming back, which
+ * takes two moves the Manhattan Distance doesn't count. For each line, the
+ * fewest tiles that have to leave it for the rest to be in order are found,
+ * and two moves are added for each. As a tile only belongs in one row and one
+ * column, the estimate never exceeds the real number of moves needed.
+ *
+ * A line is summed up by a code with one digit per cell: the position the
+ * tile in the cell belongs at within the line, or the line's length if the
+ * tile belongs in another line (or is the gap). The extra moves for every
+ * code are worked out once when the heuristic is created, so each line costs
+ * a lookup. Lines of more than <code>MAXIMUM_TABLE_LENGTH</code> cells, which
+ * would need too large a table, are worked out each time instead.
+ *
+ * When a tile slides along a row, only the columns it leaves and enters can
+ * have changed their conflicts, and only the one it belongs in at that, so
+ * updating the estimate after a move looks at a single line.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class LinearConflict implements Heuristic {
+	/**
+	 * The most cells a line may have for its conflicts to be kept in a table.
+	 */
+	private static final int MAXIMUM_TABLE_LENGTH = 6;
+	/**
+	 * The Manhattan Distance the conflicts are added to.
+	 */
+	private final ManhattanDistance manhattan;
+	/**
+	 * The rows of the board.
+	 */
+	private final Lines rows;
+	/**
+	 * The columns of the board.
+	 */
+	private final Lines columns;
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int columnCount;
+
+	/**
+	 * Creates the heuristic for the given target state.
+	 *
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 */
+	public LinearConflict(GridState target) {
+		Board board = target.getBoard();
+		manhattan = new ManhattanDistance(target);
+		rows = new Lines(target, board.getRows(), board.getColumns(),
+				board.getColumns(), 1);
+		columns = new Lines(target, board.getColumns(), board.getRows(), 1,
+				board.getColumns());
+		columnCount = board.getColumns();
+	}
+
+	/**
+	 * Calculates the Manhattan Distance plus two moves for every tile that
+	 * has to leave its row or column to let the others past.
+	 *
+	 * @param state
+	 *            The state to estimate the cost for.
+	 * @return the estimated cost to get to the target state.
+	 */
+	@Override
+	public int estimate(GridState state) {
+		int estimate = manhattan.estimate(state);
+		for (int line = 0; line < rows.count; line++) {
+			estimate += rows.conflicts(state, line, -1, 0);
+		}
+		for (int line = 0; line < columns.count; line++) {
+			estimate += columns.conflicts(state, line, -1, 0);
+		}
+		return estimate;
+	}
+
+	/**
+	 * The Manhattan Distance is updated for the tile that slid. A tile that
+	 * slides along a row stays in the same order as the others in the row,
+	 * so only the conflicts of the column it belongs in can have changed, if
+	 * it has left or entered it, and the same goes for the row it belongs in
+	 * when it slides along a column. The conflicts of that line before the
+	 * move are worked out by putting the tile back.
+	 */
+	@Override
+	public int estimateAfterMove(int parentEstimate, GridState state,
+			int from, int to) {
+		int estimate = manhattan.estimateAfterMove(parentEstimate, state,
+				from, to);
+		int tile = state.getTile(to);
+		Lines crossed = from / columnCount == to / columnCount ? columns
+				: rows;
+		int line = crossed.lineOfTile[tile];
+		if (line == crossed.lineOfCell[from]) {
+			// The tile has left the line it belongs in.
+			estimate += crossed.conflicts(state, line, -1, 0)
+					- crossed.conflicts(state, line, from, tile);
+		} else if (line == crossed.lineOfCell[to]) {
+			// The tile has come in to the line it belongs in.
+			estimate += crossed.conflicts(state, line, -1, 0)
+					- crossed.conflicts(state, line, to, 0);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Works out the extra moves for a line from the positions its tiles belong
+	 * at: two for each tile that isn't in the longest run of tiles, not
+	 * necessarily next to each other, that are already in order.
+	 *
+	 * @param positions
+	 *            The position each cell's tile belongs at within the line, or
+	 *            the length of the line if it belongs elsewhere.
+	 * @return the extra moves.
+	 */
+	static int conflicts(int[] positions) {
+		int length = positions.length;
+		// longest[i] holds the length of the longest run in order that ends
+		// with the tile in cell i.
+		int[] longest = new int[length];
+		int tiles = 0;
+		int inOrder = 0;
+		for (int i = 0; i < length; i++) {
+			if (positions[i] == length) {
+				continue;
+			}
+			tiles++;
+			longest[i] = 1;
+			for (int j = 0; j < i; j++) {
+				if (positions[j] < positions[i]) {
+					longest[i] = Math.max(longest[i], longest[j] + 1);
+				}
+			}
+			inOrder = Math.max(inOrder, longest[i]);
+		}
+		return 2 * (tiles - inOrder);
+	}
+
+	/**
+	 * The rows, or the columns, of the board, with where each tile belongs
+	 * among them and the table of conflicts for their codes.
+	 */
+	private static final class Lines {
+		/**
+		 * The number of lines.
+		 */
+		private final int count;
+		/**
+		 * The number of cells in each line.
+		 */
+		private final int length;
+		/**
+		 * cells[line][position] holds the index of the cell at that position
+		 * in the line.
+		 */
+		private final int[][] cells;
+		/**
+		 * lineOfCell[cell] holds the line the cell is in.
+		 */
+		private final int[] lineOfCell;
+		/**
+		 * lineOfTile[tile] holds the line the tile is in in the target state,
+		 * or -1 for the gap.
+		 */
+		private final int[] lineOfTile;
+		/**
+		 * digits[line][tile] holds the position within the line the tile
+		 * belongs at, or the length of the line if it belongs in another.
+		 */
+		private final int[][] digits;
+		/**
+		 * powers[position] holds the value of a digit at that position in a
+		 * code.
+		 */
+		private final int[] powers;
+		/**
+		 * The extra moves for each code, or null if the lines are too long.
+		 */
+		private final byte[] table;
+
+		/**
+		 * Works out the lines of the board and where each tile belongs.
+		 *
+		 * @param target
+		 *            The target state.
+		 * @param count
+		 *            The number of lines.
+		 * @param length
+		 *            The number of cells in each line.
+		 * @param lineStep
+		 *            The difference between the indices of the first cells of
+		 *            two neighbouring lines.
+		 * @param cellStep
+		 *            The difference between the indices of two neighbouring
+		 *            cells in a line.
+		 */
+		Lines(GridState target, int count, int length, int lineStep,
+				int cellStep) {
+			int cellCount = count * length;
+			this.count = count;
+			this.length = length;
+			cells = new int[count][length];
+			lineOfCell = new int[cellCount];
+			lineOfTile = new int[cellCount];
+			digits = new int[count][cellCount];
+			for (int line = 0; line < count; line++) {
+				Arrays.fill(digits[line], length);
+				for (int position = 0; position < length; position++) {
+					int cell = line * lineStep + position * cellStep;
+					cells[line][position] = cell;
+					lineOfCell[cell] = line;
+					int tile = target.getTile(cell);
+					if (tile == 0) {
+						lineOfTile[tile] = -1;
+					} else {
+						lineOfTile[tile] = line;
+						digits[line][tile] = position;
+					}
+				}
+			}
+
+			powers = new int[length];
+			if (length > MAXIMUM_TABLE_LENGTH) {
+				table = null;
+				return;
+			}
+			int codes = 1;
+			for (int position = 0; position < length; position++) {
+				powers[position] = codes;
+				codes *= length + 1;
+			}
+			table = new byte[codes];
+			int[] positions = new int[length];
+			for (int code = 0; code < codes; code++) {
+				int rest = code;
+				for (int position = 0; position < length; position++) {
+					positions[position] = rest % (length + 1);
+					rest /= length + 1;
+				}
+				table[code] = (byte) LinearConflict.conflicts(positions);
+			}
+		}
+
+		/**
+		 * Works out the extra moves for one line of a state, or of the state
+		 * with one cell holding another tile.
+		 *
+		 * @param state
+		 *            The state.
+		 * @param line
+		 *            The line.
+		 * @param changedCell
+		 *            The cell to take as holding the other tile, or -1 to
+		 *            take the state as it is.
+		 * @param changedTile
+		 *            The tile to take that cell as holding.
+		 * @return the extra moves.
+		 */
+		int conflicts(GridState state, int line, int changedCell,
+				int changedTile) {
+			int[] lineDigits = digits[line];
+			int[] lineCells = cells[line];
+			if (table == null) {
+				int[] positions = new int[length];
+				for (int position = 0; position < length; position++) {
+					int cell = lineCells[position];
+					positions[position] = lineDigits[cell == changedCell
+							? changedTile : state.getTile(cell)];
+				}
+				return LinearConflict.conflicts(positions);
+			}
+			int code = 0;
+			for (int position = 0; position < length; position++) {
+				int cell = lineCells[position];
+				code += lineDigits[cell == changedCell ? changedTile : state
+						.getTile(cell)] * powers[position];
+			}
+			return table[code];
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * The Manhattan Distance heuristic: the sum of the distances each tile is away
+ * from where it should be, as defined by the target state.
+ * 
+ * The distance of every tile from its target cell is worked out for every
+ * cell once when the heuristic is created, so estimating a state is a table
+ * lookup per tile, and updating the estimate after a move is a single lookup
+ * for the tile that slid.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class ManhattanDistance implements Heuristic {
+	/**
+	 * distances[tile][cell] holds the number of moves it takes to get the tile
+	 * from the cell to the cell it occupies in the target state. The row for
+	 * the gap (zero) is all zeros, as the gap isn't counted.
+	 */
+	private final int[][] distances;
+
+	/**
+	 * Creates the heuristic for the given target state.
+	 * 
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 */
+	public ManhattanDistance(GridState target) {
+		int cellCount = target.getBoard().getCellCount();
+		int columns = target.getBoard().getColumns();
+		distances = new int[cellCount][cellCount];
+		for (int targetCell = 0; targetCell < cellCount; targetCell++) {
+			int tile = target.getTile(targetCell);
+			if (tile == 0) {
+				continue;
+			}
+			int targetRow = targetCell / columns;
+			int targetColumn = targetCell % columns;
+			for (int cell = 0; cell < cellCount; cell++) {
+				int distanceRows = Math.abs(cell / columns - targetRow);
+				int distanceColumns = Math.abs(cell % columns - targetColumn);
+				distances[tile][cell] = distanceRows + distanceColumns;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the sum of the distances each tile is away from where it
+	 * should be.
+	 * 
+	 * @param state
+	 *            The state to calculate the Manhattan Distance for.
+	 * @return The sum of the distances each tile is away from where it should
+	 *         be.
+	 */
+	@Override
+	public int estimate(GridState state) {
+		int manhattanDistance = 0;
+		for (int cell = 0; cell < distances.length; cell++) {
+			manhattanDistance += distances[state.getTile(cell)][cell];
+		}
+		return manhattanDistance;
+	}
+
+	/**
+	 * Only the tile that slid has changed its distance, and only by one, so
+	 * the estimate is the parent's with that tile's old distance swapped for
+	 * its new one.
+	 */
+	@Override
+	public int estimateAfterMove(int parentEstimate, GridState state,
+			int from, int to) {
+		int[] tileDistances = distances[state.getTile(to)];
+		return parentEstimate - tileDistances[from] + tileDistances[to];
+	}
+}
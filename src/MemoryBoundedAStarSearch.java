@@ -0,0 +1,607 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out the simplified memory-bounded A Star (SMA*) search algorithm, which
+ * finds the shortest path while never holding more than a fixed number of
+ * states.
+ *
+ * The states are kept as a tree, each with the children that are still in
+ * memory. Each step takes the deepest of the states with the lowest total cost
+ * and generates one more of its children. Once the budget is used up, the
+ * shallowest of the leaves with the highest total cost is forgotten, and its
+ * parent remembers its cost so that it is only generated again once it is
+ * the best state left. When every child of a state has been generated, the
+ * state's cost is raised to the lowest of its children's, and so on up the
+ * tree, so that the costs of forgotten parts of the tree are kept.
+ *
+ * Like IDA*, the search doesn't look for repeated states beyond not undoing
+ * the previous move. As long as the budget is at least one more than the
+ * length of the shortest path, that path is found. Otherwise no path is
+ * returned, rather than the program running out of memory.
+ *
+ * The budget is given as a number of states, or as a number of bytes that is
+ * turned in to a number of states using an estimate of the size of each.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class MemoryBoundedAStarSearch {
+	/**
+	 * An estimate of the bytes taken up by a state held by the search,
+	 * including its place in the queue, on a board of up to 32 cells.
+	 */
+	public static final int BYTES_PER_NODE = 320;
+	/**
+	 * The cost given to states that can't lead to the target within the
+	 * budget.
+	 */
+	private static final int INFINITE_COST = Integer.MAX_VALUE;
+	/**
+	 * The direction given for the start state, which has no parent.
+	 */
+	private static final int NO_MOVE = -1;
+	/**
+	 * Orders the queue with the lowest total cost first and, between equal
+	 * costs, the deepest state first. The worst leaf is found from the other
+	 * end.
+	 */
+	private static final Comparator<Node> ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			if (a.cost != b.cost) {
+				return a.cost < b.cost ? -1 : 1;
+			}
+			if (a.costToGetToState != b.costToGetToState) {
+				return a.costToGetToState > b.costToGetToState ? -1 : 1;
+			}
+			return Long.compare(a.order, b.order);
+		}
+	};
+	/**
+	 * The largest number of states held at once.
+	 */
+	private final long maximumNodes;
+	/**
+	 * The states that still have children to generate, or to generate again.
+	 */
+	private TreeSet<Node> queue;
+	/**
+	 * The number of states held.
+	 */
+	private long nodesInMemory;
+	/**
+	 * The number of states created, used to order states that are otherwise
+	 * equal.
+	 */
+	private long created;
+	/**
+	 * The heuristic guiding the search.
+	 */
+	private Heuristic estimator;
+	/**
+	 * The state the search is trying to get to.
+	 */
+	private GridState targetState;
+	/**
+	 * The statistics kept while searching.
+	 */
+	private SearchStats stats;
+
+	/**
+	 * Creates a search with the budget given by the
+	 * <code>puzzle.sma.nodes</code> system property as a number of states, or
+	 * failing that the <code>puzzle.sma.bytes</code> system property as a
+	 * number of bytes (which may end in k, m or g), or failing that half of
+	 * the largest heap the JVM will use.
+	 */
+	public MemoryBoundedAStarSearch() {
+		this(defaultBudget());
+	}
+
+	/**
+	 * Creates a search that holds at most the given number of states.
+	 *
+	 * @param maximumNodes
+	 *            The largest number of states to hold at once, at least one.
+	 * @throws IllegalArgumentException
+	 *             if the budget is less than one state.
+	 */
+	public MemoryBoundedAStarSearch(long maximumNodes) {
+		if (maximumNodes < 1) {
+			throw new IllegalArgumentException(
+					"The memory budget must hold at least one state.");
+		}
+		this.maximumNodes = maximumNodes;
+	}
+
+	/**
+	 * Creates a search that holds as many states as fit in the given number
+	 * of bytes, by the estimate <code>BYTES_PER_NODE</code>.
+	 *
+	 * @param bytes
+	 *            The budget in bytes.
+	 * @return the search.
+	 */
+	public static MemoryBoundedAStarSearch withByteBudget(long bytes) {
+		return new MemoryBoundedAStarSearch(bytes / BYTES_PER_NODE);
+	}
+
+	/**
+	 * Works out the number of states to hold from the system properties.
+	 *
+	 * @return the budget in states.
+	 * @throws IllegalArgumentException
+	 *             if a property isn't a number.
+	 */
+	private static long defaultBudget() {
+		String nodes = System.getProperty("puzzle.sma.nodes");
+		if (nodes != null) {
+			return Long.parseLong(nodes.trim());
+		}
+		String bytes = System.getProperty("puzzle.sma.bytes");
+		if (bytes != null) {
+			return parseBytes(bytes) / BYTES_PER_NODE;
+		}
+		return Runtime.getRuntime().maxMemory() / 2 / BYTES_PER_NODE;
+	}
+
+	/**
+	 * Parses a number of bytes, which may end in k, m or g for kibibytes,
+	 * mebibytes or gibibytes, as the JVM's own memory options do.
+	 *
+	 * @param text
+	 *            The number of bytes.
+	 * @return the number of bytes.
+	 * @throws IllegalArgumentException
+	 *             if the text isn't a number of bytes.
+	 */
+	static long parseBytes(String text) {
+		text = text.trim().toLowerCase();
+		int shift = 0;
+		if (text.endsWith("k")) {
+			shift = 10;
+		} else if (text.endsWith("m")) {
+			shift = 20;
+		} else if (text.endsWith("g")) {
+			shift = 30;
+		}
+		if (shift > 0) {
+			text = text.substring(0, text.length() - 1);
+		}
+		return Long.parseLong(text) << shift;
+	}
+
+	/**
+	 * Returns the largest number of states the search will hold at once.
+	 *
+	 * @return the budget in states.
+	 */
+	public long getMaximumNodes() {
+		return maximumNodes;
+	}
+
+	/**
+	 * Carries out the search, finding the shortest path from the start state
+	 * to the target state if the budget allows.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @return the path from the start state to the target state, or no path
+	 *         if the target can't be reached or the shortest path is too
+	 *         long for the budget, with the statistics of the search.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic) {
+		return findPath(startState, targetState, heuristic, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the search, stopping early if it reaches one of its limits.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the start state to the target state, or no path
+	 *         if the target can't be reached or the shortest path is too
+	 *         long for the budget, with the statistics of the search. If the
+	 *         search was stopped, the partial path leads to the state with the
+	 *         lowest estimate it generated, which is kept even if it has since
+	 *         been forgotten.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, SearchLimits limits) {
+		stats = new SearchStats();
+		estimator = Heuristic.forName(heuristic, targetState);
+		this.targetState = targetState;
+		queue = new TreeSet<Node>(ORDER);
+		created = 0;
+		GridState start = startState.copy();
+		Node root = new Node(start, null, NO_MOVE, 0,
+				estimator.estimate(start));
+		root.cost = root.estimate;
+		nodesInMemory = 1;
+		enqueue(root);
+		Node closest = root;
+		stats.startSearch();
+
+		while (!queue.isEmpty()) {
+			SearchResult.Status stop = limits.check(stats.getExpanded());
+			if (stop != null) {
+				stats.startPath();
+				Path partial = buildPath(startState, closest);
+				queue = null;
+				stats.finish();
+				return new SearchResult(stop, partial, closest.estimate, stats);
+			}
+			Node best = queue.first();
+			if (best.cost == INFINITE_COST) {
+				// Every path left is too long for the budget.
+				break;
+			}
+			// An admissible heuristic is zero at the target, so only compare
+			// the state when it is.
+			if (best.estimate == 0 && best.state.equals(targetState)) {
+				stats.startPath();
+				Path path = buildPath(startState, best);
+				queue = null;
+				stats.finish();
+				return new SearchResult(path, stats);
+			}
+
+			Node child = nextChild(best);
+			if (child.estimate < closest.estimate) {
+				closest = child;
+			}
+			if (best.isComplete()) {
+				backUp(best);
+			}
+			if (best.allChildrenHeld()) {
+				dequeue(best);
+			}
+			while (nodesInMemory > maximumNodes) {
+				if (!forgetWorstLeaf()) {
+					break;
+				}
+			}
+			enqueue(child);
+			stats.updateOpenSize(queue.size());
+			stats.updateClosedSize(nodesInMemory);
+		}
+		// Failed to make a path.
+		stats.startPath();
+		queue = null;
+		stats.finish();
+		return new SearchResult(null, stats);
+	}
+
+	/**
+	 * Generates the next child of a state: one that has never been generated
+	 * if there is one, otherwise the forgotten child with the lowest cost.
+	 *
+	 * @param parent
+	 *            The state to generate a child of, which must have a child
+	 *            that isn't held.
+	 * @return the child, which is attached to the parent but not yet queued.
+	 */
+	private Node nextChild(Node parent) {
+		int direction = NO_MOVE;
+		int rememberedCost = 0;
+		for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+			if (parent.isMove(d) && (parent.generated & (1 << d)) == 0) {
+				direction = d;
+				break;
+			}
+		}
+		if (direction == NO_MOVE) {
+			for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+				if (parent.isMove(d)
+						&& parent.children[d] == null
+						&& (direction == NO_MOVE
+								|| parent.forgottenCosts[d] < rememberedCost)) {
+					direction = d;
+					rememberedCost = parent.forgottenCosts[d];
+				}
+			}
+			parent.forgottenCosts[direction] = 0;
+			stats.addReopened();
+		} else {
+			if (parent.generated == 0) {
+				stats.addExpanded();
+				if (parent.direction != NO_MOVE) {
+					// Undoing the previous move would only lead back to the
+					// parent.
+					stats.addDuplicate();
+				}
+			}
+			parent.generated |= 1 << direction;
+		}
+		stats.addGenerated();
+
+		GridState state = parent.state.copy();
+		// The tile moves from where the gap goes to where it was.
+		int to = state.getBlankIndex();
+		state.moveZero(direction);
+		int estimate = estimator.estimateAfterMove(parent.estimate, state,
+				state.getBlankIndex(), to);
+		Node child = new Node(state, parent, direction,
+				parent.costToGetToState + 1, estimate);
+		boolean isTarget = estimate == 0 && state.equals(targetState);
+		if (!isTarget
+				&& (child.costToGetToState >= maximumNodes - 1 || !child
+						.hasMoves())) {
+			// The path to any child of this state would need more states
+			// than the budget allows, or there are no children.
+			child.cost = INFINITE_COST;
+		} else {
+			// A child never costs less than its parent, nor less than it did
+			// before it was forgotten.
+			child.cost = Math.max(Math.max(parent.cost,
+					child.costToGetToState + estimate), rememberedCost);
+		}
+		parent.children[direction] = child;
+		nodesInMemory++;
+		return child;
+	}
+
+	/**
+	 * Raises the cost of a state, all of whose children have been generated,
+	 * to the lowest cost of its children, including those forgotten, and
+	 * carries on up the tree for as long as the costs change.
+	 *
+	 * @param node
+	 *            The state to update.
+	 */
+	private void backUp(Node node) {
+		while (node != null && node.isComplete()) {
+			int lowest = INFINITE_COST;
+			for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+				if (!node.isMove(d)) {
+					continue;
+				}
+				int cost = node.children[d] != null ? node.children[d].cost
+						: node.forgottenCosts[d];
+				lowest = Math.min(lowest, cost);
+			}
+			if (lowest == node.cost) {
+				return;
+			}
+			boolean queued = node.queued;
+			if (queued) {
+				dequeue(node);
+			}
+			node.cost = lowest;
+			if (queued) {
+				enqueue(node);
+			}
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Forgets the shallowest of the leaves with the highest cost, leaving its
+	 * cost with its parent and putting the parent back in the queue so that
+	 * the leaf can be generated again.
+	 *
+	 * @return false if there was no leaf that could be forgotten.
+	 */
+	private boolean forgetWorstLeaf() {
+		Iterator<Node> worstFirst = queue.descendingIterator();
+		while (worstFirst.hasNext()) {
+			Node leaf = worstFirst.next();
+			if (leaf.parent == null || leaf.hasChildren()) {
+				continue;
+			}
+			worstFirst.remove();
+			leaf.queued = false;
+			Node parent = leaf.parent;
+			parent.children[leaf.direction] = null;
+			parent.forgottenCosts[leaf.direction] = leaf.cost;
+			nodesInMemory--;
+			if (!parent.queued) {
+				enqueue(parent);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a state to the queue.
+	 *
+	 * @param node
+	 *            The state, which must not be in the queue.
+	 */
+	private void enqueue(Node node) {
+		queue.add(node);
+		node.queued = true;
+	}
+
+	/**
+	 * Takes a state out of the queue.
+	 *
+	 * @param node
+	 *            The state, which must be in the queue.
+	 */
+	private void dequeue(Node node) {
+		queue.remove(node);
+		node.queued = false;
+	}
+
+	/**
+	 * Builds the path from the moves that led to the target.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param goal
+	 *            The state holding the target.
+	 * @return the path from the start state to the target.
+	 */
+	private Path buildPath(GridState startState, Node goal) {
+		Path path = new Path(startState, goal.costToGetToState);
+		for (Node node = goal; node.parent != null; node = node.parent) {
+			path.setMove(node.costToGetToState - 1, node.direction);
+		}
+		return path;
+	}
+
+	/**
+	 * A state held by the search, with its place in the tree.
+	 */
+	private class Node {
+		/**
+		 * The state of the puzzle.
+		 */
+		private final GridState state;
+		/**
+		 * The state this one was generated from, or null for the start state.
+		 */
+		private final Node parent;
+		/**
+		 * The direction the gap moved in from the parent, or
+		 * <code>NO_MOVE</code> for the start state.
+		 */
+		private final int direction;
+		/**
+		 * The number of moves from the start state.
+		 */
+		private final int costToGetToState;
+		/**
+		 * The heuristic estimate of the number of moves to the target.
+		 */
+		private final int estimate;
+		/**
+		 * The total cost, raised as the costs of the children are found.
+		 */
+		private int cost;
+		/**
+		 * The children that are held, by the direction the gap moves in.
+		 */
+		private final Node[] children = new Node[4];
+		/**
+		 * The costs of the children that have been forgotten, by direction,
+		 * or zero for children that are held or have never been generated.
+		 */
+		private final int[] forgottenCosts = new int[4];
+		/**
+		 * One bit for each direction that a child has ever been generated in.
+		 */
+		private int generated = 0;
+		/**
+		 * Whether the state is in the queue.
+		 */
+		private boolean queued = false;
+		/**
+		 * The order in which the state was created.
+		 */
+		private final long order = created++;
+
+		/**
+		 * Creates a state held by the search.
+		 *
+		 * @param state
+		 *            The state of the puzzle, owned by the node.
+		 * @param parent
+		 *            The parent, or null for the start state.
+		 * @param direction
+		 *            The direction the gap moved in from the parent.
+		 * @param costToGetToState
+		 *            The number of moves from the start state.
+		 * @param estimate
+		 *            The heuristic estimate for the state.
+		 */
+		private Node(GridState state, Node parent, int direction,
+				int costToGetToState, int estimate) {
+			this.state = state;
+			this.parent = parent;
+			this.direction = direction;
+			this.costToGetToState = costToGetToState;
+			this.estimate = estimate;
+		}
+
+		/**
+		 * Determines whether a direction leads to a child, as it can't undo
+		 * the move that led to the state.
+		 *
+		 * @param d
+		 *            The direction.
+		 * @return true if the gap can move that way to a new child.
+		 */
+		private boolean isMove(int d) {
+			return state.canMove(d)
+					&& (direction == NO_MOVE || d != GridState
+							.opposite(direction));
+		}
+
+		/**
+		 * Determines whether there are any children at all.
+		 *
+		 * @return true if the gap can move to a new child.
+		 */
+		private boolean hasMoves() {
+			for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+				if (isMove(d)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Determines whether every child has been generated at least once.
+		 *
+		 * @return true if every child has been generated.
+		 */
+		private boolean isComplete() {
+			for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+				if (isMove(d) && (generated & (1 << d)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Determines whether every child is held.
+		 *
+		 * @return true if no child is waiting to be generated.
+		 */
+		private boolean allChildrenHeld() {
+			for (int d = GridState.UP; d <= GridState.RIGHT; d++) {
+				if (isMove(d) && children[d] == null) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Determines whether any child is held.
+		 *
+		 * @return true if the state isn't a leaf.
+		 */
+		private boolean hasChildren() {
+			for (Node child : children) {
+				if (child != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
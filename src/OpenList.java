@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * The open list used by the A Star (A*) search algorithm to keep track of the
+ * states it still has to work on.
+ * 
+ * The costs of the states in a sliding puzzle are small whole numbers, so
+ * rather than a heap the states are kept in buckets, one per total cost and,
+ * within that, one per cost to get to the state. Each state remembers its
+ * index within its bucket and the list keeps a map from each state to the
+ * instance of it that is in the list, so adding a state, lowering its cost and
+ * taking the cheapest state are all constant time operations. Ties between
+ * states with the same total cost are broken in favour of the state that is
+ * furthest from the start, as it is likely to be closest to the target.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class OpenList {
+	/**
+	 * The states in the list, indexed by total cost and then by the cost to
+	 * get to the state.
+	 */
+	private ArrayList<ArrayList<ArrayList<GridState>>> buckets = new ArrayList<ArrayList<ArrayList<GridState>>>();
+	/**
+	 * The number of states in each total cost bucket.
+	 */
+	private int[] bucketSizes = new int[0];
+	/**
+	 * Maps each state to the instance of it that is in the list.
+	 */
+	private HashMap<GridState, GridState> members = new HashMap<GridState, GridState>();
+	/**
+	 * No bucket below this total cost contains any states.
+	 */
+	private int lowestCost = 0;
+
+	/**
+	 * Adds a state to the list, using the cost and cost to get to the state
+	 * that have already been set on it.
+	 * 
+	 * @param state
+	 *            The state to add, which must not already be in the list.
+	 */
+	public void add(GridState state) {
+		members.put(state, state);
+		insert(state);
+	}
+
+	/**
+	 * Returns the instance of the given state that is in the list, so that it
+	 * can be compared with a newly generated copy of the same state.
+	 * 
+	 * @param state
+	 *            The state to look for.
+	 * @return the equal state in the list, or null if there isn't one.
+	 */
+	public GridState get(GridState state) {
+		return members.get(state);
+	}
+
+	/**
+	 * Determines whether an equal state is in the list.
+	 * 
+	 * @param state
+	 *            The state to look for.
+	 * @return true if an equal state is in the list.
+	 */
+	public boolean contains(GridState state) {
+		return members.containsKey(state);
+	}
+
+	/**
+	 * Lowers the costs of a state that is already in the list and moves it to
+	 * the matching bucket.
+	 * 
+	 * @param state
+	 *            The instance of the state that is in the list, as returned by
+	 *            <code>get</code>.
+	 * @param costToGetToState
+	 *            The new cost to get to the state.
+	 * @param cost
+	 *            The new total cost of the state.
+	 */
+	public void decreaseKey(GridState state, int costToGetToState, int cost) {
+		detach(state);
+		state.setCostToGetToState(costToGetToState);
+		state.setCost(cost);
+		insert(state);
+	}
+
+	/**
+	 * Removes and returns the state with the lowest total cost, preferring the
+	 * one with the highest cost to get to it when there is a tie.
+	 * 
+	 * @return the cheapest state in the list, or null if the list is empty.
+	 */
+	public GridState poll() {
+		if (members.isEmpty()) {
+			return null;
+		}
+		while (isBucketEmpty(lowestCost)) {
+			lowestCost++;
+		}
+		ArrayList<ArrayList<GridState>> bucket = buckets.get(lowestCost);
+		for (int g = bucket.size() - 1; g >= 0; g--) {
+			ArrayList<GridState> states = bucket.get(g);
+			if (!states.isEmpty()) {
+				GridState state = states.remove(states.size() - 1);
+				state.setOpenListIndex(-1);
+				bucketSizes[lowestCost]--;
+				members.remove(state);
+				return state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the lowest total cost of any state in the list, without removing
+	 * it.
+	 * 
+	 * @return the lowest total cost, or <code>Integer.MAX_VALUE</code> if the
+	 *         list is empty.
+	 */
+	public int getLowestCost() {
+		if (members.isEmpty()) {
+			return Integer.MAX_VALUE;
+		}
+		while (isBucketEmpty(lowestCost)) {
+			lowestCost++;
+		}
+		return lowestCost;
+	}
+
+	/**
+	 * Determines whether the list is empty.
+	 * 
+	 * @return true if there are no states in the list.
+	 */
+	public boolean isEmpty() {
+		return members.isEmpty();
+	}
+
+	/**
+	 * Returns the number of states in the list.
+	 * 
+	 * @return the number of states in the list.
+	 */
+	public int size() {
+		return members.size();
+	}
+
+	/**
+	 * Returns the states in the list, in no particular order, for searches
+	 * that need to look over every one of them or move them to another list.
+	 * 
+	 * @return a view of the states in the list, which can't be changed.
+	 */
+	public Collection<GridState> states() {
+		return Collections.unmodifiableSet(members.keySet());
+	}
+
+	/**
+	 * Puts a state in the bucket for its costs, creating the bucket if needed.
+	 * 
+	 * @param state
+	 *            The state to put in its bucket.
+	 */
+	private void insert(GridState state) {
+		int cost = state.getCost();
+		int costToGetToState = state.getCostToGetToState();
+		while (buckets.size() <= cost) {
+			buckets.add(new ArrayList<ArrayList<GridState>>());
+		}
+		if (bucketSizes.length <= cost) {
+			bucketSizes = Arrays.copyOf(bucketSizes,
+					Math.max(cost + 1, bucketSizes.length * 2));
+		}
+		bucketSizes[cost]++;
+		ArrayList<ArrayList<GridState>> bucket = buckets.get(cost);
+		while (bucket.size() <= costToGetToState) {
+			bucket.add(new ArrayList<GridState>());
+		}
+		ArrayList<GridState> states = bucket.get(costToGetToState);
+		state.setOpenListIndex(states.size());
+		states.add(state);
+		if (cost < lowestCost) {
+			lowestCost = cost;
+		}
+	}
+
+	/**
+	 * Takes a state out of its bucket by moving the last state in the bucket
+	 * in to its place.
+	 * 
+	 * @param state
+	 *            The state to take out of its bucket.
+	 */
+	private void detach(GridState state) {
+		ArrayList<GridState> states = buckets.get(state.getCost()).get(
+				state.getCostToGetToState());
+		int index = state.getOpenListIndex();
+		GridState last = states.remove(states.size() - 1);
+		if (last != state) {
+			states.set(index, last);
+			last.setOpenListIndex(index);
+		}
+		state.setOpenListIndex(-1);
+		bucketSizes[state.getCost()]--;
+	}
+
+	/**
+	 * Determines whether there are no states with the given total cost.
+	 * 
+	 * @param cost
+	 *            The total cost of the bucket to check.
+	 * @return true if the bucket has no states in it.
+	 */
+	private boolean isBucketEmpty(int cost) {
+		return cost >= bucketSizes.length || bucketSizes[cost] == 0;
+	}
+}
@@ -0,0 +1,449 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out the A Star (A*) search algorithm on every processor at once, by hash
+ * distributed A* (HDA*).
+ *
+ * Every state is owned by one thread, chosen by its hash code, and only that
+ * thread keeps it in its open list and closed set, so the threads never share
+ * a list. When a thread generates a child owned by another thread, the child
+ * is added to a batch for that thread, and full batches are passed over
+ * through the owner's mailbox, a lock-free queue.
+ *
+ * The first path found is not necessarily the shortest, so each thread keeps
+ * searching until no state it holds could lead to a shorter path than the
+ * best found. The search ends when every thread has run out of such states
+ * and no batches are on their way between threads, which is tracked with a
+ * single counter of the states in transit plus the threads still working.
+ *
+ * The threads share one set of limits. Each adds its expansions to a shared
+ * count every <code>FLUSH_INTERVAL</code> states and checks the limits then,
+ * so the node limit may be passed by up to that many states per thread.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class ParallelAStarSearch {
+	/**
+	 * The number of children sent to another thread in a single batch.
+	 */
+	private static final int BATCH_SIZE = 64;
+	/**
+	 * The number of states a thread expands before sending any partly filled
+	 * batches, so that cheap states don't sit waiting for a batch to fill.
+	 */
+	private static final int FLUSH_INTERVAL = 256;
+	/**
+	 * The number of threads searching.
+	 */
+	private final int threads;
+	/**
+	 * The threads' own part of the search.
+	 */
+	private Worker[] workers;
+	/**
+	 * The heuristic guiding the search, shared by every thread as it is never
+	 * changed once built.
+	 */
+	private Heuristic estimator;
+	/**
+	 * The state the search is trying to get to.
+	 */
+	private GridState targetState;
+	/**
+	 * The number of states sent between threads that have not yet been taken
+	 * in by their owner, plus the number of threads that still have states
+	 * worth expanding. The search is over once this reaches zero.
+	 */
+	private final AtomicLong outstanding = new AtomicLong();
+	/**
+	 * The length of the shortest path found so far.
+	 */
+	private final AtomicInteger bestCost = new AtomicInteger(Integer.MAX_VALUE);
+	/**
+	 * The instance of the target state at the end of the shortest path found
+	 * so far.
+	 */
+	private GridState bestGoal;
+	/**
+	 * The statistics kept while searching, to which each thread's own are
+	 * added once the search is over.
+	 */
+	private SearchStats stats;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * The number of states expanded by every thread, as last added in.
+	 */
+	private final AtomicLong expandedByAll = new AtomicLong();
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't. Set by
+	 * the first thread to find a limit has been reached, so that the others
+	 * stop too.
+	 */
+	private volatile SearchResult.Status stop;
+
+	/**
+	 * Creates a search that uses one thread per processor, or the number of
+	 * threads given by the <code>puzzle.threads</code> system property.
+	 */
+	public ParallelAStarSearch() {
+		this(Integer.getInteger("puzzle.threads", Runtime.getRuntime()
+				.availableProcessors()));
+	}
+
+	/**
+	 * Creates a search that uses the given number of threads.
+	 *
+	 * @param threads
+	 *            The number of threads to search with.
+	 */
+	public ParallelAStarSearch(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Carries out the search, finding the shortest path from the start state
+	 * to the target state.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @return the path from the start state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic) {
+		return findPath(startState, targetState, heuristic, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the search, stopping every thread early if it reaches one
+	 * of its limits.
+	 *
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state in which the algorithm is to try and achieve as a
+	 *            result of carrying out the algorithm.
+	 * @param heuristic
+	 *            The name of the heuristic to use, as accepted by
+	 *            <code>Heuristic.forName</code>.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the start state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search. If the
+	 *         search was stopped, the partial path is the best path found if
+	 *         there is one, which may not be the shortest, and otherwise leads
+	 *         to the state with the lowest estimate any thread expanded.
+	 */
+	public SearchResult findPath(GridState startState, GridState targetState,
+			String heuristic, SearchLimits limits) {
+		stats = new SearchStats();
+		this.limits = limits;
+		stop = null;
+		expandedByAll.set(0);
+		bestCost.set(Integer.MAX_VALUE);
+		bestGoal = null;
+		this.estimator = Heuristic.forName(heuristic, targetState);
+		this.targetState = targetState;
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(startState.getBoard());
+		}
+
+		// Searches from a copy, so that the caller's state isn't linked to
+		// the states the search reaches.
+		GridState start = startState.copy();
+		start.setCostToGetToState(0);
+		start.setPredictedCostToTarget(estimator.estimate(start));
+		start.setCost(start.getPredictedCostToTarget());
+		outstanding.set(1);
+		workers[owner(start)].mailbox.add(new GridState[] { start });
+
+		stats.startSearch();
+		Thread[] running = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			running[i] = new Thread(workers[i], "hda-" + i);
+			running[i].start();
+		}
+		try {
+			for (Thread thread : running) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		}
+
+		stats.startPath();
+		GridState closest = start;
+		for (Worker worker : workers) {
+			stats.add(worker.stats);
+			if (worker.closest != null
+					&& worker.closest.getPredictedCostToTarget() < closest
+							.getPredictedCostToTarget()) {
+				closest = worker.closest;
+			}
+		}
+		SearchResult.Status reason = stop;
+		GridState end = bestGoal != null || reason == null ? bestGoal : closest;
+		// Traverses backwards to work out the path the algorithm took
+		Path path = end == null ? null : Path.fromParents(end);
+		int estimate = end == null ? -1 : end.getPredictedCostToTarget();
+		// Lets go of the states the workers reached, so that they can be
+		// garbage collected as soon as the path has been worked out.
+		workers = null;
+		bestGoal = null;
+		stats.finish();
+		if (reason != null) {
+			return new SearchResult(reason, path, estimate, stats);
+		}
+		return new SearchResult(path, stats);
+	}
+
+	/**
+	 * Returns the index of the thread that owns a state.
+	 *
+	 * @param state
+	 *            The state.
+	 * @return the index of its owner in <code>workers</code>.
+	 */
+	private int owner(GridState state) {
+		return (state.hashCode() >>> 1) % threads;
+	}
+
+	/**
+	 * Records a path to the target if it is shorter than the best found so
+	 * far.
+	 *
+	 * @param goal
+	 *            The instance of the target state at the end of the path.
+	 */
+	private synchronized void recordGoal(GridState goal) {
+		if (goal.getCostToGetToState() < bestCost.get()) {
+			bestGoal = goal;
+			bestCost.set(goal.getCostToGetToState());
+		}
+	}
+
+	/**
+	 * One thread's part of the search: the states it owns and the batches of
+	 * children it has yet to send to the other threads.
+	 */
+	private class Worker implements Runnable {
+		/**
+		 * The states owned by this thread that still have to be worked on.
+		 */
+		private final OpenList openList = new OpenList();
+		/**
+		 * The states owned by this thread that have been worked on, with the
+		 * cost it took to get to each.
+		 */
+		private final ClosedSet closed;
+		/**
+		 * Batches of states sent to this thread by the others.
+		 */
+		private final ConcurrentLinkedQueue<GridState[]> mailbox = new ConcurrentLinkedQueue<GridState[]>();
+		/**
+		 * The children waiting to be sent to each thread.
+		 */
+		private final ArrayList<ArrayList<GridState>> outgoing = new ArrayList<ArrayList<GridState>>();
+		/**
+		 * Whether this thread is counted in <code>outstanding</code> as still
+		 * having work to do.
+		 */
+		private boolean active = false;
+		/**
+		 * The statistics of this thread's part of the search.
+		 */
+		private final SearchStats stats = new SearchStats();
+		/**
+		 * The state with the lowest estimate this thread has expanded, or
+		 * null if it hasn't expanded any.
+		 */
+		private GridState closest;
+
+		/**
+		 * Creates one thread's part of the search.
+		 *
+		 * @param board
+		 *            The board being searched.
+		 */
+		Worker(Board board) {
+			closed = new ClosedSet(board, true);
+			for (int i = 0; i < threads; i++) {
+				outgoing.add(new ArrayList<GridState>());
+			}
+		}
+
+		/**
+		 * Takes in states from the mailbox and expands the cheapest state
+		 * held, until the search is over.
+		 */
+		@Override
+		public void run() {
+			long expanded = 0;
+			while (stop == null) {
+				GridState[] batch = mailbox.poll();
+				if (batch != null) {
+					// Counts this thread as working before the batch stops
+					// being counted, so the total never drops to zero early.
+					if (!active) {
+						outstanding.incrementAndGet();
+						active = true;
+					}
+					for (GridState state : batch) {
+						receive(state);
+					}
+					outstanding.addAndGet(-batch.length);
+					continue;
+				}
+
+				if (active && openList.getLowestCost() < bestCost.get()) {
+					expand(openList.poll());
+					if (++expanded % FLUSH_INTERVAL == 0) {
+						flush();
+						SearchResult.Status reason = limits.check(expandedByAll
+								.addAndGet(FLUSH_INTERVAL));
+						if (reason != null) {
+							stop = reason;
+						}
+					}
+					continue;
+				}
+
+				if (active) {
+					flush();
+					active = false;
+					outstanding.decrementAndGet();
+				}
+				if (outstanding.get() == 0) {
+					break;
+				}
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * Adds a state this thread owns to its open list, unless it has
+		 * already been reached at least as cheaply.
+		 *
+		 * @param state
+		 *            The state, with its costs and parent already set.
+		 */
+		private void receive(GridState state) {
+			int costToGetToState = state.getCostToGetToState();
+			boolean wasClosed = closed.contains(state);
+			if (wasClosed && costToGetToState >= closed.getCost(state)) {
+				stats.addDuplicate();
+				return;
+			}
+			GridState openState = openList.get(state);
+			if (openState == null) {
+				if (wasClosed) {
+					stats.addReopened();
+				}
+				openList.add(state);
+				stats.updateOpenSize(openList.size());
+			} else if (costToGetToState < openState.getCostToGetToState()) {
+				openState.setParentState(state.getParentState());
+				openList.decreaseKey(openState, costToGetToState,
+						costToGetToState + openState.getPredictedCostToTarget());
+			} else {
+				stats.addDuplicate();
+			}
+		}
+
+		/**
+		 * Works on a state: records it as the end of a path if it is the
+		 * target, and otherwise sends each of its children to its owner.
+		 *
+		 * @param current
+		 *            The state to expand.
+		 */
+		private void expand(GridState current) {
+			if (targetState.equals(current)) {
+				recordGoal(current);
+				return;
+			}
+			closed.add(current, current.getCostToGetToState());
+			stats.updateClosedSize(closed.size());
+			if (closest == null
+					|| current.getPredictedCostToTarget() < closest
+							.getPredictedCostToTarget()) {
+				closest = current;
+			}
+
+			current.generateChildren();
+			stats.addExpanded();
+			for (GridState child : current.getChildren()) {
+				stats.addGenerated();
+				int costToGetToState = current.getCostToGetToState() + 1;
+				child.setCostToGetToState(costToGetToState);
+				child.setPredictedCostToTarget(estimator.estimateAfterMove(
+						current.getPredictedCostToTarget(), child,
+						child.getBlankIndex(), current.getBlankIndex()));
+				child.setCost(costToGetToState
+						+ child.getPredictedCostToTarget());
+				// A child that can't lead to a shorter path than the best
+				// found isn't worth sending.
+				if (child.getCost() >= bestCost.get()) {
+					continue;
+				}
+
+				int owner = owner(child);
+				if (workers[owner] == this) {
+					receive(child);
+					continue;
+				}
+				ArrayList<GridState> batch = outgoing.get(owner);
+				batch.add(child);
+				if (batch.size() == BATCH_SIZE) {
+					send(owner, batch);
+				}
+			}
+			// The children are now held by their owners.
+			current.getChildren().clear();
+		}
+
+		/**
+		 * Sends every partly filled batch to its thread.
+		 */
+		private void flush() {
+			for (int owner = 0; owner < threads; owner++) {
+				ArrayList<GridState> batch = outgoing.get(owner);
+				if (!batch.isEmpty()) {
+					send(owner, batch);
+				}
+			}
+		}
+
+		/**
+		 * Sends a batch of states to their owner and empties it. The states
+		 * are counted as outstanding before they can be taken in.
+		 *
+		 * @param owner
+		 *            The index of the thread that owns the states.
+		 * @param batch
+		 *            The states to send.
+		 */
+		private void send(int owner, ArrayList<GridState> batch) {
+			outstanding.addAndGet(batch.size());
+			workers[owner].mailbox.add(batch.toArray(new GridState[batch
+					.size()]));
+			batch.clear();
+		}
+	}
+}
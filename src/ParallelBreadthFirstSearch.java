@@ -0,0 +1,499 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class that is used to hold the data structures and behaviours to carry
+ * out a breadth first search on every processor at once.
+ *
+ * The search goes one layer (depth) at a time. Each layer is a plain array of
+ * packed states, split in to chunks that are expanded in parallel, and the
+ * new states each chunk finds are joined together to make the next layer.
+ * Every state reached is added to a hash table that the threads share without
+ * locking, so each state is only put in a layer by the thread that reached it
+ * first. The table records, for each state, the cell the gap was in before the
+ * move that reached it, which is all that is needed to walk back to the
+ * initial state.
+ *
+ * States are held as a single packed word, so only boards of up to 16 cells
+ * (the 15-puzzle) can be searched.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class ParallelBreadthFirstSearch {
+	/**
+	 * The number of chunks each thread's share of a layer is split in to, so
+	 * that threads that finish early can take work from slower ones.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+	/**
+	 * The fewest states a chunk is given, as smaller chunks cost more to hand
+	 * out than to expand.
+	 */
+	private static final int MINIMUM_CHUNK = 256;
+	/**
+	 * The initial number of slots in the hash table.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	/**
+	 * The most slots the hash table can have: the largest power of two an
+	 * array can hold.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	/**
+	 * Recorded in place of a parent's gap cell for the initial state.
+	 */
+	private static final byte NO_PARENT = -1;
+	/**
+	 * The number of threads the layers are expanded on.
+	 */
+	private final int threads;
+	/**
+	 * The board being searched.
+	 */
+	private Board board;
+	/**
+	 * The packed tiles of each state reached, or zero for an empty slot (no
+	 * state has every tile zero).
+	 */
+	private AtomicLongArray keys;
+	/**
+	 * The cell the gap was in before the move that reached the state in each
+	 * slot, or <code>NO_PARENT</code> for the initial state. Each is written
+	 * by the thread that claimed the slot and only read after the layer has
+	 * finished.
+	 */
+	private byte[] parents;
+	/**
+	 * The number of states in the hash table.
+	 */
+	private int size;
+	/**
+	 * The packed tiles of the target state.
+	 */
+	private long target;
+	/**
+	 * Set when any thread reaches the target, so the others can stop early.
+	 */
+	private volatile boolean found;
+	/**
+	 * When to give up the search.
+	 */
+	private SearchLimits limits;
+	/**
+	 * Why the search was stopped by its limits, or null if it wasn't. Set by
+	 * whichever thread first finds a limit has been reached, so the others
+	 * can stop too.
+	 */
+	private volatile SearchResult.Status stop;
+	/**
+	 * The number of states expanded in the layers before the one being
+	 * expanded.
+	 */
+	private long expandedBefore;
+	/**
+	 * The statistics kept while searching, to which each chunk's own are
+	 * added once its layer is finished.
+	 */
+	private SearchStats stats;
+
+	/**
+	 * Creates a search that uses one thread per processor, or the number of
+	 * threads given by the <code>puzzle.threads</code> system property.
+	 */
+	public ParallelBreadthFirstSearch() {
+		this(Integer.getInteger("puzzle.threads", Runtime.getRuntime()
+				.availableProcessors()));
+	}
+
+	/**
+	 * Creates a search that uses the given number of threads.
+	 *
+	 * @param threads
+	 *            The number of threads to expand the layers on.
+	 */
+	public ParallelBreadthFirstSearch(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Carries out the breadth first search, expanding each layer in parallel.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search.
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 16 cells.
+	 * @throws IllegalStateException
+	 *             if the search reaches more states than its table can hold.
+	 */
+	public SearchResult findPath(GridState initialState, GridState targetState) {
+		return findPath(initialState, targetState, new SearchLimits());
+	}
+
+	/**
+	 * Carries out the breadth first search, expanding each layer in parallel
+	 * and stopping early if it reaches one of its limits. The threads share
+	 * the limits, and each state is counted by its place in the layers, so
+	 * no more states are expanded than the node limit allows.
+	 *
+	 * @param initialState
+	 *            The initial (starting) state of the puzzle.
+	 * @param targetState
+	 *            The target (goal) state that the algorithm is required to try
+	 *            and reach.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path from the initial state to the target state, or no path
+	 *         if there isn't one, with the statistics of the search. If the
+	 *         search was stopped there is no partial path, as the table only
+	 *         keeps the way back from states that are known to be needed.
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 16 cells.
+	 * @throws IllegalStateException
+	 *             if the search reaches more states than its table can hold.
+	 */
+	public SearchResult findPath(GridState initialState,
+			GridState targetState, SearchLimits limits) {
+		stats = new SearchStats();
+		board = initialState.getBoard();
+		if (board.getWordCount() != 1) {
+			throw new IllegalArgumentException(
+					"The parallel breadth first search can't search a "
+							+ board + " board, only boards of up to 16 cells.");
+		}
+		keys = new AtomicLongArray(INITIAL_CAPACITY);
+		parents = new byte[INITIAL_CAPACITY];
+		size = 0;
+		found = false;
+		this.limits = limits;
+		stop = null;
+		expandedBefore = 0;
+		target = targetState.getWord(0);
+
+		Layer layer = new Layer();
+		layer.add(initialState.getWord(0), initialState.getBlankIndex());
+		insert(initialState.getWord(0), NO_PARENT);
+		size = 1;
+		found = initialState.getWord(0) == target;
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		stats.startSearch();
+		try {
+			while (!found && stop == null && layer.size > 0) {
+				// Every state in the layer has at most four children, so
+				// growing the table first means it never fills up mid-layer.
+				ensureCapacity(size + 4L * layer.size);
+				Layer next = expandLayer(pool, layer);
+				expandedBefore += layer.size;
+				stats.updateOpenSize(layer.size + next.size);
+				layer = next;
+				size += layer.size;
+				stats.updateClosedSize(size);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		stats.startPath();
+		Path path = found ? buildPath(initialState, targetState) : null;
+		// Lets go of the table, so that it can be garbage collected as soon
+		// as the path has been worked out.
+		keys = null;
+		parents = null;
+		stats.finish();
+		if (!found && stop != null) {
+			return new SearchResult(stop, null, -1, stats);
+		}
+		return new SearchResult(path, stats);
+	}
+
+	/**
+	 * Expands every state in a layer, in parallel.
+	 *
+	 * @param pool
+	 *            The pool to run the chunks on.
+	 * @param layer
+	 *            The states in the layer.
+	 * @return the states in the next layer.
+	 */
+	private Layer expandLayer(ForkJoinPool pool, final Layer layer) {
+		int chunkSize = Math.max(MINIMUM_CHUNK, layer.size
+				/ (threads * CHUNKS_PER_THREAD) + 1);
+		List<Callable<Layer>> chunks = new ArrayList<Callable<Layer>>();
+		List<SearchStats> chunkStats = new ArrayList<SearchStats>();
+		for (int start = 0; start < layer.size; start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(layer.size, start + chunkSize);
+			final SearchStats statsOfChunk = new SearchStats();
+			chunkStats.add(statsOfChunk);
+			chunks.add(new Callable<Layer>() {
+				@Override
+				public Layer call() {
+					return expandChunk(layer, from, to, statsOfChunk);
+				}
+			});
+		}
+
+		Layer next = new Layer();
+		try {
+			for (Future<Layer> chunk : pool.invokeAll(chunks)) {
+				next.addAll(chunk.get());
+			}
+			for (SearchStats statsOfChunk : chunkStats) {
+				stats.add(statsOfChunk);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return next;
+	}
+
+	/**
+	 * Expands a run of states in a layer, keeping the children no other
+	 * thread has reached first.
+	 *
+	 * @param layer
+	 *            The states in the layer.
+	 * @param from
+	 *            The index of the first state to expand.
+	 * @param to
+	 *            The index after the last state to expand.
+	 * @param chunkStats
+	 *            The statistics to count the chunk's work in, which only this
+	 *            thread uses.
+	 * @return the new states reached.
+	 */
+	private Layer expandChunk(Layer layer, int from, int to,
+			SearchStats chunkStats) {
+		Layer children = new Layer();
+		long[] tiles = new long[1];
+		for (int i = from; i < to && !found && stop == null; i++) {
+			SearchResult.Status reason = limits.check(expandedBefore + i);
+			if (reason != null) {
+				stop = reason;
+				break;
+			}
+			int blankIndex = layer.blanks[i];
+			chunkStats.addExpanded();
+			for (int cell : board.getNeighbours(blankIndex)) {
+				chunkStats.addGenerated();
+				tiles[0] = layer.tiles[i];
+				board.moveBlank(tiles, blankIndex, cell);
+				if (insert(tiles[0], (byte) blankIndex)) {
+					children.add(tiles[0], cell);
+					if (tiles[0] == target) {
+						found = true;
+					}
+				} else {
+					chunkStats.addDuplicate();
+				}
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Adds a state to the hash table, unless it is already there. Slots are
+	 * claimed with a compare-and-set, so when two threads reach the same state
+	 * only one of them adds it.
+	 *
+	 * @param tiles
+	 *            The packed tiles of the state.
+	 * @param parent
+	 *            The cell the gap was in before the move that reached it.
+	 * @return true if the state was added, false if it was already there.
+	 */
+	private boolean insert(long tiles, byte parent) {
+		int mask = parents.length - 1;
+		int slot = hash(tiles) & mask;
+		while (true) {
+			long key = keys.get(slot);
+			if (key == tiles) {
+				return false;
+			}
+			if (key == 0) {
+				if (keys.compareAndSet(slot, 0, tiles)) {
+					parents[slot] = parent;
+					return true;
+				}
+				// Another thread took the slot first, so look at it again.
+				continue;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Returns the slot holding a state that is in the hash table.
+	 *
+	 * @param tiles
+	 *            The packed tiles of the state.
+	 * @return the slot the state is in.
+	 */
+	private int find(long tiles) {
+		int mask = parents.length - 1;
+		int slot = hash(tiles) & mask;
+		while (keys.get(slot) != tiles) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Grows the hash table between layers so that it stays no more than half
+	 * full once it holds the given number of states.
+	 *
+	 * @param states
+	 *            The most states the table may need to hold.
+	 * @throws IllegalStateException
+	 *             if the table would need more slots than an array can have.
+	 */
+	private void ensureCapacity(long states) {
+		long capacity = parents.length;
+		while (capacity < states * 2) {
+			capacity <<= 1;
+		}
+		if (capacity == parents.length) {
+			return;
+		}
+		if (capacity > MAXIMUM_CAPACITY) {
+			throw new IllegalStateException(
+					"The parallel breadth first search can't keep " + states
+							+ " states in its hash table.");
+		}
+		AtomicLongArray oldKeys = keys;
+		byte[] oldParents = parents;
+		keys = new AtomicLongArray((int) capacity);
+		parents = new byte[(int) capacity];
+		for (int slot = 0; slot < oldParents.length; slot++) {
+			long key = oldKeys.get(slot);
+			if (key != 0) {
+				insert(key, oldParents[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Hashes a state's packed tiles the same way as
+	 * <code>GridState.hashWords</code>.
+	 *
+	 * @param tiles
+	 *            The packed tiles.
+	 * @return the hash code.
+	 */
+	private static int hash(long tiles) {
+		long hash = tiles * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Walks back from the target state to the initial state by undoing the
+	 * move recorded for each state, once to count the moves and again to
+	 * record them from the last to the first.
+	 *
+	 * @param initialState
+	 *            The initial state.
+	 * @param targetState
+	 *            The target state.
+	 * @return the path from the initial state to the target state.
+	 */
+	private Path buildPath(GridState initialState, GridState targetState) {
+		int length = 0;
+		long[] tiles = { targetState.getWord(0) };
+		int blankIndex = targetState.getBlankIndex();
+		byte parent = parents[find(tiles[0])];
+		while (parent != NO_PARENT) {
+			length++;
+			board.moveBlank(tiles, blankIndex, parent);
+			blankIndex = parent;
+			parent = parents[find(tiles[0])];
+		}
+
+		Path path = new Path(initialState, length);
+		tiles[0] = targetState.getWord(0);
+		blankIndex = targetState.getBlankIndex();
+		parent = parents[find(tiles[0])];
+		while (parent != NO_PARENT) {
+			path.setMove(--length, Path.direction(board.getColumns(), parent,
+					blankIndex));
+			board.moveBlank(tiles, blankIndex, parent);
+			blankIndex = parent;
+			parent = parents[find(tiles[0])];
+		}
+		return path;
+	}
+
+	/**
+	 * One layer of the search, or the part of it found by one chunk: the
+	 * packed tiles of each state and the cell its gap is in.
+	 */
+	private static class Layer {
+		/**
+		 * The packed tiles of each state.
+		 */
+		private long[] tiles = new long[16];
+		/**
+		 * The cell the gap is in for each state.
+		 */
+		private byte[] blanks = new byte[16];
+		/**
+		 * The number of states in the layer.
+		 */
+		private int size = 0;
+
+		/**
+		 * Adds a state to the layer.
+		 *
+		 * @param stateTiles
+		 *            The packed tiles of the state.
+		 * @param blankIndex
+		 *            The cell its gap is in.
+		 */
+		private void add(long stateTiles, int blankIndex) {
+			ensureCapacity(size + 1);
+			tiles[size] = stateTiles;
+			blanks[size] = (byte) blankIndex;
+			size++;
+		}
+
+		/**
+		 * Adds every state in another layer to this one.
+		 *
+		 * @param other
+		 *            The layer to add.
+		 */
+		private void addAll(Layer other) {
+			ensureCapacity(size + other.size);
+			System.arraycopy(other.tiles, 0, tiles, size, other.size);
+			System.arraycopy(other.blanks, 0, blanks, size, other.size);
+			size += other.size;
+		}
+
+		/**
+		 * Grows the arrays to hold at least the given number of states.
+		 *
+		 * @param capacity
+		 *            The number of states to make room for.
+		 */
+		private void ensureCapacity(int capacity) {
+			if (capacity > tiles.length) {
+				int length = Math.max(capacity, tiles.length * 2);
+				tiles = Arrays.copyOf(tiles, length);
+				blanks = Arrays.copyOf(blanks, length);
+			}
+		}
+	}
+}
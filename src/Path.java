@@ -1,42 +1,233 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
- * Class to collect the gridState objects that are on the path the algorithms
- * take to solve the 8-puzzle.
- * 
+ * Class to hold the path the algorithms take to solve the puzzle, as the
+ * state it starts from and the moves of the gap (zero) from there.
+ *
+ * Each move is one of four directions, so the moves are packed two bits each
+ * in to <code>long</code> words, 32 to a word. The states along the path are
+ * only worked out again, by playing the moves back from the start state, when
+ * they are asked for. The path keeps its own copy of the start state, so
+ * holding on to it doesn't hold on to any of the states the search reached.
+ *
  * @author Dale Peters (dmp9@aber.ac.uk)
- * 
+ *
  */
-public class Path {
+public class Path implements Iterable<GridState> {
 	/**
-	 * Stores the <code>GridState</code> objects the algorithm took to solve the
-	 * 8-puzzle.
+	 * The number of bits each move takes up.
 	 */
-	private ArrayList<GridState> path;
+	private static final int BITS_PER_MOVE = 2;
+	/**
+	 * The number of moves packed in to each word.
+	 */
+	private static final int MOVES_PER_WORD = Long.SIZE / BITS_PER_MOVE;
+	/**
+	 * The state the path starts from, which isn't part of it.
+	 */
+	private final GridState startState;
+	/**
+	 * The directions the gap (zero) moves in, packed with the first move in
+	 * the lowest bits of the first word.
+	 */
+	private long[] moves;
+	/**
+	 * The number of moves in the path.
+	 */
+	private int length;
+
+	/**
+	 * Creates a new, empty path.
+	 *
+	 * @param startState
+	 *            The state the path starts from. Only its tiles are kept.
+	 */
+	public Path(GridState startState) {
+		this(startState, 0);
+	}
+
+	/**
+	 * Creates a path of the given number of moves, each of which must be set
+	 * with <code>setMove</code>, for searches that find the moves from the end
+	 * of the path back to its start.
+	 *
+	 * @param startState
+	 *            The state the path starts from. Only its tiles are kept.
+	 * @param length
+	 *            The number of moves in the path.
+	 */
+	public Path(GridState startState, int length) {
+		this.startState = startState.copy();
+		this.moves = new long[Math.max(1, (length + MOVES_PER_WORD - 1)
+				/ MOVES_PER_WORD)];
+		this.length = length;
+	}
+
+	/**
+	 * Works out the path to a state by following its parents back to the
+	 * state with no parent, which the path starts from.
+	 *
+	 * @param endState
+	 *            The state at the end of the path.
+	 * @return the path from the first of the state's ancestors to the state.
+	 */
+	public static Path fromParents(GridState endState) {
+		int length = 0;
+		GridState current = endState;
+		while (current.getParentState() != null) {
+			length++;
+			current = current.getParentState();
+		}
+		Path path = new Path(current, length);
+		int columns = current.getBoard().getColumns();
+		current = endState;
+		while (current.getParentState() != null) {
+			GridState parent = current.getParentState();
+			path.setMove(--length, direction(columns,
+					parent.getBlankIndex(), current.getBlankIndex()));
+			current = parent;
+		}
+		return path;
+	}
+
+	/**
+	 * Works out which way the gap (zero) moved between two cells next to each
+	 * other.
+	 *
+	 * @param columns
+	 *            The number of columns on the board.
+	 * @param from
+	 *            The row-major index of the cell the gap moved from.
+	 * @param to
+	 *            The row-major index of the cell the gap moved to.
+	 * @return the direction of the move.
+	 */
+	public static int direction(int columns, int from, int to) {
+		int difference = to - from;
+		if (difference == -columns) {
+			return GridState.UP;
+		} else if (difference == columns) {
+			return GridState.DOWN;
+		} else if (difference == -1) {
+			return GridState.LEFT;
+		}
+		return GridState.RIGHT;
+	}
+
+	/**
+	 * Adds a move to the end of the path.
+	 *
+	 * @param direction
+	 *            The direction the gap (zero) moves in, one of
+	 *            <code>GridState.UP</code>, <code>DOWN</code>,
+	 *            <code>LEFT</code> or <code>RIGHT</code>.
+	 */
+	public void addToEnd(int direction) {
+		if (length == moves.length * MOVES_PER_WORD) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		setMove(length++, direction);
+	}
+
+	/**
+	 * Sets one of the moves of the path.
+	 *
+	 * @param index
+	 *            The index of the move, less than the length of the path.
+	 * @param direction
+	 *            The direction the gap (zero) moves in.
+	 */
+	public void setMove(int index, int direction) {
+		int shift = (index % MOVES_PER_WORD) * BITS_PER_MOVE;
+		int word = index / MOVES_PER_WORD;
+		moves[word] = (moves[word] & ~(3L << shift))
+				| ((long) direction << shift);
+	}
 
 	/**
-	 * Creates a new instance of the <code>Path</code> class.
+	 * Returns one of the moves of the path.
+	 *
+	 * @param index
+	 *            The index of the move, less than the length of the path.
+	 * @return the direction the gap (zero) moves in.
 	 */
-	public Path() {
-		path = new ArrayList<GridState>();
+	public int getMove(int index) {
+		int shift = (index % MOVES_PER_WORD) * BITS_PER_MOVE;
+		return (int) (moves[index / MOVES_PER_WORD] >>> shift) & 3;
 	}
 
 	/**
-	 * Adds a <code>GridState</code> object to the start of the <code>path</code>
-	 * instance variable (adds it at index 0 of the ArrayList).
-	 * 
-	 * @param state The <code>GridState</code> object to add to the path.
+	 * Returns the number of moves in the path.
+	 *
+	 * @return the length of the path.
 	 */
-	public void addToStart(GridState state) {
-		path.add(0, state);
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the state the path starts from.
+	 *
+	 * @return a copy of the start state.
+	 */
+	public GridState getStartState() {
+		return startState.copy();
+	}
+
+	/**
+	 * Works out the state at the end of the path by playing every move.
+	 *
+	 * @return the state the path leads to.
+	 */
+	public GridState getEndState() {
+		GridState state = startState.copy();
+		for (int i = 0; i < length; i++) {
+			state.moveZero(getMove(i));
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the states along the path after each move, not including the
+	 * start state, worked out one at a time as they are asked for.
+	 *
+	 * @return an iterator over the states along the path.
+	 */
+	@Override
+	public Iterator<GridState> iterator() {
+		return new Iterator<GridState>() {
+			private final GridState current = startState.copy();
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < length;
+			}
+
+			@Override
+			public GridState next() {
+				if (next >= length) {
+					throw new NoSuchElementException();
+				}
+				current.moveZero(getMove(next++));
+				return current.copy();
+			}
+		};
 	}
 
 	/**
-	 * Returns the path of the algorithm.
-	 * 
-	 * @return the path the algorithm took.
+	 * Returns the moves of the gap (zero) along the path as a string of
+	 * letters, U, D, L and R for up, down, left and right.
+	 *
+	 * @return the moves along the path.
 	 */
-	public ArrayList<GridState> getPath() {
-		return this.path;
+	public String toMoveString() {
+		StringBuilder letters = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			letters.append("UDLR".charAt(getMove(i)));
+		}
+		return letters.toString();
 	}
 }
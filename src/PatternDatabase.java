@@ -0,0 +1,481 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A pattern database: the exact number of moves of a chosen set of tiles (the
+ * pattern) it takes to get them from any arrangement to where they are in the
+ * target state, ignoring every other tile.
+ *
+ * Only moves of the pattern's own tiles are counted, so the values of
+ * databases built for disjoint patterns can be added together and still never
+ * overestimate the real number of moves. The values are indexed by the rank of
+ * the cells the pattern's tiles are in, among all the ways of placing that
+ * many tiles on the board.
+ *
+ * Building a database is a breadth first search backwards from the target over
+ * every placement of the pattern's tiles and the gap, so it is done once and
+ * written to a file, which later runs map in to memory rather than read.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class PatternDatabase {
+	/**
+	 * The first four bytes of every pattern database file ("SPDB").
+	 */
+	private static final int MAGIC = 0x53504442;
+	/**
+	 * Marks a placement that the search has not reached yet.
+	 */
+	private static final byte UNVISITED = (byte) 0xFF;
+	/**
+	 * The number of bits used for each tile's cell when the cells of the
+	 * pattern are packed in to a <code>long</code>.
+	 */
+	private static final int BITS_PER_POSITION = 5;
+	/**
+	 * The largest number of tiles a pattern can have, limited by packing their
+	 * cells in to a <code>long</code>.
+	 */
+	public static final int MAXIMUM_TILES = Long.SIZE / BITS_PER_POSITION;
+	/**
+	 * The board the database was built for.
+	 */
+	private final Board board;
+	/**
+	 * The tiles in the pattern.
+	 */
+	private final int[] patternTiles;
+	/**
+	 * slotOfTile[tile] holds the tile's index in <code>patternTiles</code>, or
+	 * -1 if the tile is not in the pattern.
+	 */
+	private final int[] slotOfTile;
+	/**
+	 * weights[i] holds the number of ways of placing the pattern's tiles after
+	 * the i'th once the first i + 1 have been placed, the weight of the i'th
+	 * digit of a placement's rank.
+	 */
+	private final int[] weights;
+	/**
+	 * The number of moves for each placement, indexed by rank.
+	 */
+	private final ByteBuffer distances;
+	/**
+	 * The position of the first distance in <code>distances</code>.
+	 */
+	private final int dataOffset;
+
+	/**
+	 * Creates a pattern database around distances that have already been built
+	 * or loaded.
+	 *
+	 * @param board
+	 *            The board the database was built for.
+	 * @param patternTiles
+	 *            The tiles in the pattern.
+	 * @param distances
+	 *            The number of moves for each placement, indexed by rank.
+	 * @param dataOffset
+	 *            The position of the first distance in the buffer.
+	 */
+	private PatternDatabase(Board board, int[] patternTiles,
+			ByteBuffer distances, int dataOffset) {
+		this.board = board;
+		this.patternTiles = patternTiles;
+		this.distances = distances;
+		this.dataOffset = dataOffset;
+		this.slotOfTile = new int[board.getCellCount()];
+		Arrays.fill(slotOfTile, -1);
+		for (int slot = 0; slot < patternTiles.length; slot++) {
+			slotOfTile[patternTiles[slot]] = slot;
+		}
+		this.weights = weights(board, patternTiles.length);
+	}
+
+	/**
+	 * Returns the tiles in the pattern.
+	 *
+	 * @return the pattern's tiles. The array must not be modified.
+	 */
+	public int[] getPatternTiles() {
+		return patternTiles;
+	}
+
+	/**
+	 * Returns the number of moves of the pattern's tiles it takes to get them
+	 * to where they are in the target.
+	 *
+	 * @param state
+	 *            The state to look up.
+	 * @return the number of moves of the pattern's tiles.
+	 */
+	public int lookup(GridState state) {
+		return distanceAt(rank(positions(state)));
+	}
+
+	/**
+	 * Returns the number of moves of the pattern's tiles it would take if one
+	 * of them was in a different cell. Used to find the value for the state a
+	 * tile has just slid out of, without building it.
+	 *
+	 * @param state
+	 *            The state to look up.
+	 * @param tile
+	 *            A tile in the pattern.
+	 * @param cell
+	 *            The cell to treat the tile as being in.
+	 * @return the number of moves of the pattern's tiles.
+	 */
+	public int lookup(GridState state, int tile, int cell) {
+		int shift = slotOfTile[tile] * BITS_PER_POSITION;
+		long positions = positions(state) & ~(0x1FL << shift);
+		return distanceAt(rank(positions | ((long) cell << shift)));
+	}
+
+	/**
+	 * Determines whether the tile is one of the pattern's.
+	 *
+	 * @param tile
+	 *            The tile to check.
+	 * @return true if the tile is in the pattern.
+	 */
+	public boolean containsTile(int tile) {
+		return slotOfTile[tile] >= 0;
+	}
+
+	/**
+	 * Builds the database for the given pattern by breadth first search from
+	 * the target.
+	 *
+	 * Each node of the search is a placement of the pattern's tiles together
+	 * with the cell of the gap. Moving the gap in to a cell that isn't one of
+	 * the pattern's costs nothing, so the nodes reached that way are worked on
+	 * as part of the same layer. The distance of a placement is the lowest
+	 * over every cell the gap could be in.
+	 *
+	 * @param target
+	 *            The state the database gives distances to.
+	 * @param patternTiles
+	 *            The tiles in the pattern, which must not include the gap.
+	 * @return the built database, held in memory.
+	 */
+	public static PatternDatabase build(GridState target, int[] patternTiles) {
+		Board board = target.getBoard();
+		int cellCount = board.getCellCount();
+		int tileCount = patternTiles.length;
+		if (tileCount < 1 || tileCount > MAXIMUM_TILES) {
+			throw new IllegalArgumentException("A pattern must have between 1 and "
+					+ MAXIMUM_TILES + " tiles.");
+		}
+		if (cellCount > 1 << BITS_PER_POSITION) {
+			throw new IllegalArgumentException("Pattern databases can't be built for a "
+					+ board + " board.");
+		}
+		long placementCount = numberOfPlacements(board, tileCount);
+		if (placementCount * cellCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A pattern of " + tileCount
+					+ " tiles is too large to build on a " + board + " board.");
+		}
+		PatternDatabase database = new PatternDatabase(board,
+				patternTiles.clone(), ByteBuffer.allocate(0), 0);
+
+		// Nodes are indexed by placement rank times the number of cells plus
+		// the cell of the gap.
+		byte[] nodes = new byte[(int) placementCount * cellCount];
+		Arrays.fill(nodes, UNVISITED);
+		long targetPositions = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			int slot = database.slotOfTile[target.getTile(cell)];
+			if (slot >= 0) {
+				targetPositions |= (long) cell << (slot * BITS_PER_POSITION);
+			}
+		}
+		nodes[database.rank(targetPositions) * cellCount
+				+ target.getBlankIndex()] = 0;
+
+		int[] occupants = new int[cellCount];
+		int[] stack = new int[cellCount];
+		for (int depth = 0; depth < 0xFF; depth++) {
+			boolean layerFound = false;
+			for (int node = 0; node < nodes.length; node++) {
+				if ((nodes[node] & 0xFF) != depth) {
+					continue;
+				}
+				layerFound = true;
+				int stackSize = 0;
+				stack[stackSize++] = node;
+				while (stackSize > 0) {
+					int current = stack[--stackSize];
+					int placement = current / cellCount;
+					int blank = current % cellCount;
+					long positions = database.unrank(placement);
+					Arrays.fill(occupants, -1);
+					for (int slot = 0; slot < tileCount; slot++) {
+						occupants[(int) (positions >>> (slot * BITS_PER_POSITION)) & 0x1F] = slot;
+					}
+					for (int neighbour : board.getNeighbours(blank)) {
+						int slot = occupants[neighbour];
+						if (slot < 0) {
+							// The gap swaps with a tile outside the pattern.
+							int next = placement * cellCount + neighbour;
+							if (nodes[next] == UNVISITED) {
+								nodes[next] = (byte) depth;
+								stack[stackSize++] = next;
+							}
+						} else {
+							// One of the pattern's tiles slides in to the gap.
+							int shift = slot * BITS_PER_POSITION;
+							long moved = (positions & ~(0x1FL << shift))
+									| ((long) blank << shift);
+							int next = database.rank(moved) * cellCount
+									+ neighbour;
+							if (nodes[next] == UNVISITED) {
+								nodes[next] = (byte) (depth + 1);
+							}
+						}
+					}
+				}
+			}
+			if (!layerFound) {
+				break;
+			}
+		}
+
+		// Keep the lowest distance over every cell the gap could be in. A
+		// placement the search couldn't reach is given zero, which is always
+		// safe to add.
+		byte[] distances = new byte[(int) placementCount];
+		for (int placement = 0; placement < distances.length; placement++) {
+			int lowest = 0xFF;
+			for (int blank = 0; blank < cellCount; blank++) {
+				lowest = Math.min(lowest, nodes[placement * cellCount + blank]
+						& 0xFF);
+			}
+			distances[placement] = (byte) (lowest == 0xFF ? 0 : lowest);
+		}
+		return new PatternDatabase(board, database.patternTiles,
+				ByteBuffer.wrap(distances), 0);
+	}
+
+	/**
+	 * Writes the database to a file, headed by the size of the board, the
+	 * pattern's tiles and the target it was built for.
+	 *
+	 * @param file
+	 *            The file to write to.
+	 * @param target
+	 *            The state the database was built for.
+	 * @throws IOException
+	 *             if the file couldn't be written.
+	 */
+	public void write(File file, GridState target) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(headerLength(board,
+				patternTiles.length));
+		header.putInt(MAGIC);
+		header.putInt(board.getRows());
+		header.putInt(board.getColumns());
+		header.putInt(patternTiles.length);
+		for (int tile : patternTiles) {
+			header.putInt(tile);
+		}
+		for (int cell = 0; cell < board.getCellCount(); cell++) {
+			header.putInt(target.getTile(cell));
+		}
+		header.flip();
+
+		ByteBuffer data = distances.duplicate();
+		data.position(dataOffset);
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			FileChannel channel = output.getChannel();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Maps a database file in to memory.
+	 *
+	 * @param file
+	 *            The file to load.
+	 * @param target
+	 *            The state the database is needed for.
+	 * @return the database.
+	 * @throws IOException
+	 *             if the file couldn't be read, isn't a pattern database or
+	 *             was built for a different target.
+	 */
+	public static PatternDatabase load(File file, GridState target)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			Board board = target.getBoard();
+			if (mapped.getInt() != MAGIC || mapped.getInt() != board.getRows()
+					|| mapped.getInt() != board.getColumns()) {
+				throw new IOException(file + " is not a pattern database for a "
+						+ board + " board.");
+			}
+			int[] patternTiles = new int[mapped.getInt()];
+			for (int slot = 0; slot < patternTiles.length; slot++) {
+				patternTiles[slot] = mapped.getInt();
+			}
+			for (int cell = 0; cell < board.getCellCount(); cell++) {
+				if (mapped.getInt() != target.getTile(cell)) {
+					throw new IOException(file
+							+ " was built for a different target state.");
+				}
+			}
+			long expectedLength = mapped.position()
+					+ numberOfPlacements(board, patternTiles.length);
+			if (channel.size() != expectedLength) {
+				throw new IOException(file + " is truncated.");
+			}
+			return new PatternDatabase(board, patternTiles, mapped,
+					mapped.position());
+		} finally {
+			// The mapping stays valid after the channel is closed.
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the number of ways of placing the given number of tiles on the
+	 * board, n! / (n - k)!.
+	 *
+	 * @param board
+	 *            The board to place the tiles on.
+	 * @param tileCount
+	 *            The number of tiles to place.
+	 * @return the number of placements.
+	 */
+	public static long numberOfPlacements(Board board, int tileCount) {
+		long placements = 1;
+		for (int i = 0; i < tileCount; i++) {
+			placements *= board.getCellCount() - i;
+		}
+		return placements;
+	}
+
+	/**
+	 * Returns the distance stored for a placement.
+	 *
+	 * @param rank
+	 *            The rank of the placement.
+	 * @return the number of moves of the pattern's tiles.
+	 */
+	private int distanceAt(int rank) {
+		return distances.get(dataOffset + rank) & 0xFF;
+	}
+
+	/**
+	 * Finds the cells of the pattern's tiles in the state, packed in to a
+	 * <code>long</code> in the order of <code>patternTiles</code>.
+	 *
+	 * @param state
+	 *            The state to look in.
+	 * @return the packed cells of the pattern's tiles.
+	 */
+	private long positions(GridState state) {
+		long positions = 0;
+		for (int cell = 0; cell < slotOfTile.length; cell++) {
+			int slot = slotOfTile[state.getTile(cell)];
+			if (slot >= 0) {
+				positions |= (long) cell << (slot * BITS_PER_POSITION);
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns the rank of a placement of the pattern's tiles. Each tile
+	 * contributes the number of free cells before its own, multiplied by the
+	 * number of ways of placing the tiles after it.
+	 *
+	 * @param positions
+	 *            The packed cells of the pattern's tiles.
+	 * @return the rank of the placement.
+	 */
+	private int rank(long positions) {
+		int rank = 0;
+		int used = 0;
+		for (int slot = 0; slot < weights.length; slot++) {
+			int cell = (int) (positions >>> (slot * BITS_PER_POSITION)) & 0x1F;
+			rank += (cell - Integer.bitCount(used & ((1 << cell) - 1)))
+					* weights[slot];
+			used |= 1 << cell;
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns the placement of the pattern's tiles with the given rank.
+	 *
+	 * @param rank
+	 *            The rank of the placement.
+	 * @return the packed cells of the pattern's tiles.
+	 */
+	private long unrank(int rank) {
+		long positions = 0;
+		int used = 0;
+		for (int slot = 0; slot < weights.length; slot++) {
+			int freeBefore = rank / weights[slot];
+			rank %= weights[slot];
+			int cell = 0;
+			while ((used & (1 << cell)) != 0 || freeBefore-- > 0) {
+				cell++;
+			}
+			used |= 1 << cell;
+			positions |= (long) cell << (slot * BITS_PER_POSITION);
+		}
+		return positions;
+	}
+
+	/**
+	 * Works out the weight of each digit of a placement's rank.
+	 *
+	 * @param board
+	 *            The board the tiles are placed on.
+	 * @param tileCount
+	 *            The number of tiles in the pattern.
+	 * @return the weights, one per tile.
+	 */
+	private static int[] weights(Board board, int tileCount) {
+		int[] weights = new int[tileCount];
+		for (int slot = 0; slot < tileCount; slot++) {
+			int weight = 1;
+			for (int i = slot + 1; i < tileCount; i++) {
+				weight *= board.getCellCount() - i;
+			}
+			weights[slot] = weight;
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns the length of a database file's header.
+	 *
+	 * @param board
+	 *            The board the database was built for.
+	 * @param tileCount
+	 *            The number of tiles in the pattern.
+	 * @return the length of the header in bytes.
+	 */
+	private static int headerLength(Board board, int tileCount) {
+		return 4 * (4 + tileCount + board.getCellCount());
+	}
+}
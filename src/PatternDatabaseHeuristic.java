@@ -0,0 +1,232 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The additive pattern database heuristic: the tiles are split in to disjoint
+ * patterns, and the estimate is the sum of each pattern's database value.
+ * 
+ * The databases are kept in files in a directory, one per pattern, named after
+ * the board, the pattern and the target. Any that are missing are built and
+ * written the first time they are needed, so the cost of building them is
+ * only paid once. Once loaded, the heuristic for each target and directory is
+ * kept for the life of the program and shared by every search that asks for
+ * it, as looking tiles up in the databases doesn't change them.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class PatternDatabaseHeuristic implements Heuristic {
+	/**
+	 * The directory the databases are kept in unless the
+	 * <code>puzzle.pdb.dir</code> system property names another.
+	 */
+	public static final String DEFAULT_DIRECTORY = "pdb";
+	/**
+	 * The most entries the search that builds a single database may use, which
+	 * limits how many tiles go in each pattern.
+	 */
+	private static final long MAXIMUM_BUILD_ENTRIES = 1L << 28;
+	/**
+	 * The heuristics already loaded, keyed by the directory their databases
+	 * are kept in and the tiles of their target.
+	 */
+	private static final Map<String, PatternDatabaseHeuristic> LOADED = new HashMap<String, PatternDatabaseHeuristic>();
+	/**
+	 * The database for each pattern.
+	 */
+	private final PatternDatabase[] databases;
+	/**
+	 * databaseOfTile[tile] holds the index of the database whose pattern
+	 * contains the tile, or -1 for the gap.
+	 */
+	private final int[] databaseOfTile;
+
+	/**
+	 * Creates the heuristic from databases built for the same target, whose
+	 * patterns must not share any tiles.
+	 * 
+	 * @param board
+	 *            The board the databases were built for.
+	 * @param databases
+	 *            The database for each pattern.
+	 */
+	public PatternDatabaseHeuristic(Board board, PatternDatabase[] databases) {
+		this.databases = databases;
+		this.databaseOfTile = new int[board.getCellCount()];
+		for (int tile = 0; tile < databaseOfTile.length; tile++) {
+			databaseOfTile[tile] = -1;
+			for (int i = 0; i < databases.length; i++) {
+				if (databases[i].containsTile(tile)) {
+					databaseOfTile[tile] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads the databases for the target from the directory named by the
+	 * <code>puzzle.pdb.dir</code> system property, or <code>pdb</code> if it is
+	 * not set, building any that are missing.
+	 * 
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 * @return the heuristic.
+	 * @throws IOException
+	 *             if a database couldn't be read or written.
+	 */
+	public static PatternDatabaseHeuristic forTarget(GridState target)
+			throws IOException {
+		return forTarget(target, new File(System.getProperty(
+				"puzzle.pdb.dir", DEFAULT_DIRECTORY)));
+	}
+
+	/**
+	 * Loads the databases for the target from the directory, building any
+	 * that are missing, or returns the heuristic loaded by an earlier call
+	 * with the same target and directory. Only one thread loads or builds
+	 * databases at a time, so no database is built twice.
+	 * 
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 * @param directory
+	 *            The directory the databases are kept in.
+	 * @return the heuristic.
+	 * @throws IOException
+	 *             if a database couldn't be read or written.
+	 */
+	public static synchronized PatternDatabaseHeuristic forTarget(
+			GridState target, File directory) throws IOException {
+		String key = directory.getAbsolutePath() + "\n" + target;
+		PatternDatabaseHeuristic loaded = LOADED.get(key);
+		if (loaded != null) {
+			return loaded;
+		}
+		List<int[]> patterns = defaultPatterns(target);
+		PatternDatabase[] databases = new PatternDatabase[patterns.size()];
+		for (int i = 0; i < databases.length; i++) {
+			File file = new File(directory, fileName(target, patterns.get(i)));
+			if (!file.exists()) {
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("Couldn't create " + directory);
+				}
+				System.err.println("Building pattern database " + file + "...");
+				PatternDatabase.build(target, patterns.get(i)).write(file,
+						target);
+			}
+			databases[i] = PatternDatabase.load(file, target);
+		}
+		loaded = new PatternDatabaseHeuristic(target.getBoard(), databases);
+		LOADED.put(key, loaded);
+		return loaded;
+	}
+
+	/**
+	 * Splits the tiles in to patterns by the order of the cells they occupy in
+	 * the target, with each pattern as large as the build limit allows, up to
+	 * six tiles. For the 15-puzzle this gives patterns of 6, 6 and 3 tiles,
+	 * and for the 24-puzzle five patterns of 5, 5, 5, 5 and 4.
+	 * 
+	 * @param target
+	 *            The state the databases will be built for.
+	 * @return the tiles of each pattern.
+	 */
+	public static List<int[]> defaultPatterns(GridState target) {
+		Board board = target.getBoard();
+		int patternSize = 1;
+		while (patternSize < PatternDatabase.MAXIMUM_TILES
+				&& patternSize < board.getCellCount() - 1
+				&& PatternDatabase.numberOfPlacements(board, patternSize + 1)
+						* board.getCellCount() <= MAXIMUM_BUILD_ENTRIES) {
+			patternSize++;
+		}
+		patternSize = Math.min(patternSize, 6);
+
+		List<int[]> patterns = new ArrayList<int[]>();
+		List<Integer> pattern = new ArrayList<Integer>();
+		for (int cell = 0; cell < board.getCellCount(); cell++) {
+			int tile = target.getTile(cell);
+			if (tile == 0) {
+				continue;
+			}
+			pattern.add(tile);
+			if (pattern.size() == patternSize) {
+				patterns.add(toArray(pattern));
+				pattern.clear();
+			}
+		}
+		if (!pattern.isEmpty()) {
+			patterns.add(toArray(pattern));
+		}
+		return patterns;
+	}
+
+	/**
+	 * Sums the value of every pattern's database.
+	 */
+	@Override
+	public int estimate(GridState state) {
+		int estimate = 0;
+		for (PatternDatabase database : databases) {
+			estimate += database.lookup(state);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Only the database whose pattern contains the tile that slid can have
+	 * changed, so only its value is looked up again.
+	 */
+	@Override
+	public int estimateAfterMove(int parentEstimate, GridState state,
+			int from, int to) {
+		int tile = state.getTile(to);
+		if (databaseOfTile[tile] < 0) {
+			return parentEstimate;
+		}
+		PatternDatabase database = databases[databaseOfTile[tile]];
+		return parentEstimate - database.lookup(state, tile, from)
+				+ database.lookup(state);
+	}
+
+	/**
+	 * Returns the name of the file a pattern's database is kept in, made up of
+	 * the board size, the pattern's tiles and a hash of the target.
+	 * 
+	 * @param target
+	 *            The state the database is built for.
+	 * @param patternTiles
+	 *            The tiles in the pattern.
+	 * @return the name of the file.
+	 */
+	private static String fileName(GridState target, int[] patternTiles) {
+		StringBuilder name = new StringBuilder();
+		name.append(target.getBoard()).append('-');
+		for (int i = 0; i < patternTiles.length; i++) {
+			if (i > 0) {
+				name.append('.');
+			}
+			name.append(patternTiles[i]);
+		}
+		name.append('-').append(Integer.toHexString(target.hashCode()));
+		return name.append(".pdb").toString();
+	}
+
+	/**
+	 * Converts a list of tiles to an array.
+	 * 
+	 * @param tiles
+	 *            The tiles.
+	 * @return the tiles as an array.
+	 */
+	private static int[] toArray(List<Integer> tiles) {
+		int[] array = new int[tiles.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = tiles.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Converts between the states of a puzzle and their position in the
+ * lexicographic ordering of all the permutations of the tiles (the Lehmer code
+ * of the grid), giving every state a unique number between 0 and n! - 1 for a
+ * board with n cells. This is used as a perfect hash so that sets of states
+ * can be kept as plain arrays.
+ * 
+ * Ranks are held in a <code>long</code>, so boards of up to 20 cells can be
+ * ranked.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class PermutationRank {
+	/**
+	 * The largest number of cells a board can have and still be ranked.
+	 */
+	public static final int MAXIMUM_CELLS = 20;
+	/**
+	 * FACTORIALS[i] holds i!, the weight of the Lehmer digit with i cells
+	 * after it.
+	 */
+	private static final long[] FACTORIALS = new long[MAXIMUM_CELLS + 1];
+
+	static {
+		FACTORIALS[0] = 1;
+		for (int i = 1; i < FACTORIALS.length; i++) {
+			FACTORIALS[i] = FACTORIALS[i - 1] * i;
+		}
+	}
+
+	/**
+	 * Returns the number of different arrangements of the tiles on a board.
+	 * 
+	 * @param board
+	 *            The board, which must have no more than
+	 *            <code>MAXIMUM_CELLS</code> cells.
+	 * @return the number of permutations of the board's cells.
+	 */
+	public static long numberOfPermutations(Board board) {
+		return FACTORIALS[board.getCellCount()];
+	}
+
+	/**
+	 * Returns the rank of the state's tiles among all the permutations of the
+	 * tiles.
+	 * 
+	 * Each cell contributes the number of tiles smaller than it that have not
+	 * yet been seen, multiplied by the factorial of the number of cells after
+	 * it. Tiles already seen are kept as a bit mask so that number is a single
+	 * bit count rather than a scan.
+	 * 
+	 * @param state
+	 *            The state to rank, on a board of no more than
+	 *            <code>MAXIMUM_CELLS</code> cells.
+	 * @return the rank of the state, between 0 and n! - 1.
+	 */
+	public static long rank(GridState state) {
+		int cellCount = state.getBoard().getCellCount();
+		long rank = 0;
+		int seen = 0;
+		for (int i = 0; i < cellCount; i++) {
+			int tile = state.getTile(i);
+			int smallerSeen = Integer.bitCount(seen & ((1 << tile) - 1));
+			rank += (tile - smallerSeen) * FACTORIALS[cellCount - 1 - i];
+			seen |= 1 << tile;
+		}
+		return rank;
+	}
+}
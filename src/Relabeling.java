@@ -0,0 +1,256 @@
+/**
+ * Turns a puzzle in to an equivalent one by reflecting the board and giving
+ * the tiles different numbers, and turns the moves that solve one in to the
+ * moves that solve the other.
+ *
+ * The tiles are numbered 1, 2, 3 and so on in the order of their cells in the
+ * reflected target, with the gap left as 0. If the gap of the target ends up
+ * in the last cell, the target becomes the standard goal, so any target with
+ * its gap in a corner can be solved with the heuristic tables, distance table
+ * and cached paths kept for the standard goal alone.
+ *
+ * A reflection is given as three bits: bit 0 flips the columns, bit 1 flips
+ * the rows and bit 2 swaps the rows with the columns (before flipping them),
+ * which only keeps the board the same shape if it is square.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class Relabeling {
+	/**
+	 * The number of reflections of a square board, including leaving it as it
+	 * is. The first half of them don't swap rows with columns, so they are the
+	 * reflections of any board.
+	 */
+	public static final int SYMMETRIES = 8;
+	/**
+	 * The displacement in rows of a move in each direction.
+	 */
+	private static final int[] ROW_STEP = { -1, 1, 0, 0 };
+	/**
+	 * The displacement in columns of a move in each direction.
+	 */
+	private static final int[] COLUMN_STEP = { 0, 0, -1, 1 };
+	/**
+	 * The board the puzzle is on.
+	 */
+	private final Board board;
+	/**
+	 * The reflection, as the bits described above.
+	 */
+	private final int symmetry;
+	/**
+	 * label[tile] holds the number the tile is given.
+	 */
+	private final int[] label;
+	/**
+	 * directions[d] holds the direction a move in direction d becomes once
+	 * reflected.
+	 */
+	private final int[] directions;
+	/**
+	 * backwards[d] holds the direction d came from before it was reflected.
+	 */
+	private final int[] backwards;
+	/**
+	 * The cell the gap of the target is reflected to.
+	 */
+	private final int targetBlank;
+
+	/**
+	 * Creates the relabeling that reflects the board and numbers the tiles in
+	 * the order of their cells in the reflected target.
+	 *
+	 * @param targetState
+	 *            The target of the puzzle.
+	 * @param symmetry
+	 *            The reflection, which must keep the board the same shape.
+	 */
+	public Relabeling(GridState targetState, int symmetry) {
+		this.board = targetState.getBoard();
+		this.symmetry = symmetry;
+		int[] reflected = new int[board.getCellCount()];
+		for (int cell = 0; cell < reflected.length; cell++) {
+			reflected[reflectCell(cell)] = targetState.getTile(cell);
+		}
+		this.label = new int[reflected.length];
+		int next = 0;
+		int blank = 0;
+		for (int cell = 0; cell < reflected.length; cell++) {
+			if (reflected[cell] == 0) {
+				blank = cell;
+			} else {
+				label[reflected[cell]] = ++next;
+			}
+		}
+		this.targetBlank = blank;
+		this.directions = new int[ROW_STEP.length];
+		this.backwards = new int[ROW_STEP.length];
+		for (int d = 0; d < ROW_STEP.length; d++) {
+			directions[d] = reflectDirection(d);
+			backwards[directions[d]] = d;
+		}
+	}
+
+	/**
+	 * Finds the relabeling that turns the target in to the standard goal.
+	 *
+	 * @param targetState
+	 *            The target of the puzzle.
+	 * @return the relabeling, or null if the gap of the target isn't in a
+	 *         corner, where no reflection can move it to the last cell.
+	 */
+	public static Relabeling toStandardGoal(GridState targetState) {
+		Board board = targetState.getBoard();
+		int rows = board.getRows();
+		int columns = board.getColumns();
+		int row = targetState.getBlankIndex() / columns;
+		int column = targetState.getBlankIndex() % columns;
+		if ((row != 0 && row != rows - 1)
+				|| (column != 0 && column != columns - 1)) {
+			return null;
+		}
+		return new Relabeling(targetState, (column == columns - 1 ? 0 : 1)
+				| (row == rows - 1 ? 0 : 2));
+	}
+
+	/**
+	 * Returns the standard goal of a board: the tiles in order followed by the
+	 * gap.
+	 *
+	 * @param board
+	 *            The board.
+	 * @return a new instance of the goal state.
+	 */
+	public static GridState standardGoal(Board board) {
+		int[] cells = new int[board.getCellCount()];
+		for (int cell = 0; cell < cells.length - 1; cell++) {
+			cells[cell] = cell + 1;
+		}
+		return board.createState(cells);
+	}
+
+	/**
+	 * Returns whether a reflection keeps the board the same shape.
+	 *
+	 * @param board
+	 *            The board.
+	 * @param symmetry
+	 *            The reflection, as the bits described above.
+	 * @return true if the reflection can be used on the board.
+	 */
+	public static boolean fits(Board board, int symmetry) {
+		return (symmetry & 4) == 0 || board.getRows() == board.getColumns();
+	}
+
+	/**
+	 * Reflects a state and gives its tiles their new numbers.
+	 *
+	 * @param state
+	 *            A state of the puzzle.
+	 * @return the state in the equivalent puzzle.
+	 */
+	public GridState apply(GridState state) {
+		int[] cells = new int[board.getCellCount()];
+		for (int cell = 0; cell < cells.length; cell++) {
+			cells[reflectCell(cell)] = label[state.getTile(cell)];
+		}
+		return board.createState(cells);
+	}
+
+	/**
+	 * Returns the direction a move becomes in the equivalent puzzle.
+	 *
+	 * @param direction
+	 *            The direction of a move of the gap in the puzzle.
+	 * @return the direction of the move in the equivalent puzzle.
+	 */
+	public int applyToMove(int direction) {
+		return directions[direction];
+	}
+
+	/**
+	 * Turns the path found for the equivalent puzzle back in to a path for
+	 * the puzzle.
+	 *
+	 * @param path
+	 *            The path in the equivalent puzzle.
+	 * @param startState
+	 *            The start state of the puzzle, which the path becomes a path
+	 *            from.
+	 * @return the path in the puzzle.
+	 */
+	public Path mapBack(Path path, GridState startState) {
+		Path mapped = new Path(startState, path.length());
+		for (int i = 0; i < path.length(); i++) {
+			mapped.setMove(i, backwards[path.getMove(i)]);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Returns the cell the gap of the target is reflected to, which with the
+	 * board is all there is to know about the target once its tiles are
+	 * numbered.
+	 *
+	 * @return the row-major index of the cell.
+	 */
+	public int getTargetBlank() {
+		return targetBlank;
+	}
+
+	/**
+	 * Works out the cell a cell is reflected to.
+	 *
+	 * @param cell
+	 *            The row-major index of the cell.
+	 * @return the row-major index of the reflected cell.
+	 */
+	private int reflectCell(int cell) {
+		int columns = board.getColumns();
+		int row = cell / columns;
+		int column = cell % columns;
+		if ((symmetry & 4) != 0) {
+			int swap = row;
+			row = column;
+			column = swap;
+		}
+		if ((symmetry & 2) != 0) {
+			row = board.getRows() - 1 - row;
+		}
+		if ((symmetry & 1) != 0) {
+			column = columns - 1 - column;
+		}
+		return row * columns + column;
+	}
+
+	/**
+	 * Works out the direction a direction is reflected to.
+	 *
+	 * @param direction
+	 *            The direction.
+	 * @return the reflected direction.
+	 */
+	private int reflectDirection(int direction) {
+		int rowStep = ROW_STEP[direction];
+		int columnStep = COLUMN_STEP[direction];
+		if ((symmetry & 4) != 0) {
+			int swap = rowStep;
+			rowStep = columnStep;
+			columnStep = swap;
+		}
+		if ((symmetry & 2) != 0) {
+			rowStep = -rowStep;
+		}
+		if ((symmetry & 1) != 0) {
+			columnStep = -columnStep;
+		}
+		for (int d = 0; d < ROW_STEP.length; d++) {
+			if (ROW_STEP[d] == rowStep && COLUMN_STEP[d] == columnStep) {
+				return d;
+			}
+		}
+		throw new IllegalStateException("No direction " + rowStep + ","
+				+ columnStep);
+	}
+}
@@ -0,0 +1,300 @@
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes what the program has to say about the puzzles it solves, so that the
+ * searches themselves never write anything and none of the time spent writing
+ * is counted as part of a search.
+ *
+ * Everything goes through one buffer, which is only written out when it fills
+ * up or <code>flush</code> is called, rather than once per line. The results
+ * can be written in one of three formats:
+ * <ul>
+ * <li>boards: the initial and target states and every state along the path,
+ * or the most promising state reached by a search that was stopped, followed
+ * by the statistics of the search, for people to read,</li>
+ * <li>moves: just the moves of the gap (zero), U, D, L and R, on one line,</li>
+ * <li>json: a single JSON object summing up the result, for other programs to
+ * read.</li>
+ * </ul>
+ *
+ * The writer may be shared between threads, as each call writes whole lines
+ * at once.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class ResultWriter {
+	/**
+	 * The format that writes every state along the path.
+	 */
+	public static final String BOARDS = "boards";
+	/**
+	 * The format that writes just the moves along the path.
+	 */
+	public static final String MOVES = "moves";
+	/**
+	 * The format that writes a JSON summary of the result.
+	 */
+	public static final String JSON = "json";
+	/**
+	 * The size of the buffer in characters.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * The buffered writer everything is written through.
+	 */
+	private final PrintWriter out;
+	/**
+	 * The format results are written in.
+	 */
+	private final String format;
+	/**
+	 * Reused to build each line, or each state along a path, before it is
+	 * written.
+	 */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * Creates a writer that writes to the given stream.
+	 *
+	 * @param stream
+	 *            The stream to write to, usually <code>System.out</code>.
+	 * @param format
+	 *            <code>BOARDS</code>, <code>MOVES</code> or <code>JSON</code>,
+	 *            or null for <code>BOARDS</code>.
+	 * @throws IllegalArgumentException
+	 *             if the format isn't one of those.
+	 */
+	public ResultWriter(OutputStream stream, String format) {
+		if (format == null) {
+			format = BOARDS;
+		}
+		if (!format.equals(BOARDS) && !format.equals(MOVES)
+				&& !format.equals(JSON)) {
+			throw new IllegalArgumentException("Unknown output format: "
+					+ format);
+		}
+		this.format = format;
+		this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				stream), BUFFER_SIZE));
+	}
+
+	/**
+	 * Returns the format results are written in.
+	 *
+	 * @return <code>BOARDS</code>, <code>MOVES</code> or <code>JSON</code>.
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * Writes the initial and target states, in the boards format only, to
+	 * confirm to the user the states that were loaded in.
+	 *
+	 * @param startState
+	 *            The initial state.
+	 * @param targetState
+	 *            The target state.
+	 */
+	public synchronized void writeStates(GridState startState,
+			GridState targetState) {
+		if (!format.equals(BOARDS)) {
+			return;
+		}
+		line.setLength(0);
+		line.append("INITIAL STATE\n");
+		startState.appendTo(line);
+		line.append("TARGET STATE\n");
+		targetState.appendTo(line);
+		out.append(line);
+	}
+
+	/**
+	 * Writes a line saying what is about to be done, in the boards format
+	 * only.
+	 *
+	 * @param message
+	 *            The line to write.
+	 */
+	public synchronized void writeProgress(String message) {
+		if (format.equals(BOARDS)) {
+			out.println(message);
+		}
+	}
+
+	/**
+	 * Writes a line as it is, whatever the format, for results that have
+	 * already been written out in full.
+	 *
+	 * @param text
+	 *            The line to write.
+	 */
+	public synchronized void writeLine(String text) {
+		out.println(text);
+	}
+
+	/**
+	 * Writes a reason the puzzle couldn't be solved.
+	 *
+	 * @param status
+	 *            A word summing up the reason for the JSON format, such as
+	 *            "error".
+	 * @param message
+	 *            The reason, for people to read.
+	 */
+	public synchronized void writeFailure(String status, String message) {
+		if (format.equals(JSON)) {
+			out.println("{\"status\":" + jsonString(status) + ",\"message\":"
+					+ jsonString(message) + "}");
+		} else {
+			out.println(message);
+		}
+	}
+
+	/**
+	 * Writes the result of a search.
+	 *
+	 * @param description
+	 *            A description of the algorithm used.
+	 * @param result
+	 *            The result of the search.
+	 * @param elapsed
+	 *            The time taken by the whole search, in nanoseconds.
+	 */
+	public synchronized void writeResult(String description,
+			SearchResult result, long elapsed) {
+		Path path = result.getPath();
+		Path partial = result.getPartialPath();
+		String bound = result.formatBound();
+		long milliseconds = TimeUnit.NANOSECONDS.toMillis(elapsed);
+		if (format.equals(JSON)) {
+			out.println("{\"status\":"
+					+ jsonString(result.getStatus().toString())
+					+ ",\"algorithm\":" + jsonString(description)
+					+ (path == null ? "" : ",\"moves\":\""
+							+ path.toMoveString() + "\",\"length\":"
+							+ path.length())
+					+ (path == null || bound.isEmpty() ? "" : ",\"bound\":"
+							+ bound)
+					+ (partial == null ? "" : ",\"partial\":"
+							+ partialJson(result)) + ",\"milliseconds\":"
+					+ milliseconds + ",\"stats\":"
+					+ result.getStats().toJson() + "}");
+		} else if (format.equals(MOVES)) {
+			out.println(path == null ? failureMessage(result) : path
+					.toMoveString());
+		} else if (path == null) {
+			out.println(failureMessage(result));
+			if (partial != null) {
+				out.println("The most promising state it reached, "
+						+ partial.length()
+						+ " moves from the initial state"
+						+ (result.getPartialEstimate() < 0 ? "" : " and "
+								+ result.getPartialEstimate()
+								+ " from the target by the estimate")
+						+ ", is reached by " + partial.toMoveString() + ":");
+				line.setLength(0);
+				partial.getEndState().appendTo(line);
+				out.append(line);
+			}
+			out.print(result.getStats());
+		} else {
+			out.println("TARGET STATE REACHED\n");
+			out.println("This is the path it took:");
+			for (GridState state : path) {
+				line.setLength(0);
+				state.appendTo(line);
+				line.append("===\n");
+				out.append(line);
+			}
+			if (bound.isEmpty()) {
+				out.println("The path may not be the shortest path.");
+			} else if (result.getBound() > 1) {
+				out.println("The path is at most " + bound
+						+ " times as long as the shortest path.");
+			}
+			// Prints what the search did and how long each part of it took.
+			out.print(result.getStats());
+			out.println("Total time to execute algorithm: " + milliseconds
+					+ " milliseconds.");
+		}
+	}
+
+	/**
+	 * Says why a search gave no path, for people to read.
+	 *
+	 * @param result
+	 *            The result of the search.
+	 * @return the reason.
+	 */
+	private static String failureMessage(SearchResult result) {
+		switch (result.getStatus()) {
+		case TIMED_OUT:
+			return "The search ran out of time before reaching the target "
+					+ "state.";
+		case NODE_LIMIT:
+			return "The search expanded as many states as it was allowed to "
+					+ "before reaching the target state.";
+		case CANCELLED:
+			return "The search was cancelled before reaching the target "
+					+ "state.";
+		case UNSOLVABLE:
+			return "The target state can't be reached from the initial "
+					+ "state, so no search was carried out.";
+		default:
+			return "No path to the target state was found.";
+		}
+	}
+
+	/**
+	 * Writes the partial path of a search that was stopped as a JSON object,
+	 * with its moves, its length and the estimate of the moves left from its
+	 * end, if known.
+	 *
+	 * @param result
+	 *            The result of the search, which has a partial path.
+	 * @return the JSON object.
+	 */
+	public static String partialJson(SearchResult result) {
+		Path partial = result.getPartialPath();
+		return "{\"moves\":\"" + partial.toMoveString() + "\",\"length\":"
+				+ partial.length()
+				+ (result.getPartialEstimate() < 0 ? "" : ",\"estimate\":"
+						+ result.getPartialEstimate()) + "}";
+	}
+
+	/**
+	 * Writes out everything that is waiting in the buffer.
+	 */
+	public synchronized void flush() {
+		out.flush();
+	}
+
+	/**
+	 * Quotes a string for JSON, escaping the characters that need it.
+	 *
+	 * @param text
+	 *            The string.
+	 * @return the string in quotes.
+	 */
+	public static String jsonString(String text) {
+		StringBuilder quoted = new StringBuilder(text.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < ' ') {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
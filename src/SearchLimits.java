@@ -0,0 +1,137 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits on how long a search may run: a deadline, a number of states it
+ * may expand and a flag another thread can set to cancel it. A search given
+ * limits checks them each time it expands a state, and once one of them is
+ * reached it stops and returns what it has found so far, rather than running
+ * until it finds the target or the program is killed.
+ *
+ * Checking is cheap: cancelling is a single volatile flag, the count is
+ * compared with the number of states expanded, and the clock is only read
+ * every <code>CLOCK_INTERVAL</code> checks. Searches that expand states on
+ * several threads share one set of limits and count their expansions
+ * together.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class SearchLimits {
+	/**
+	 * The number of checks between reads of the clock.
+	 */
+	public static final int CLOCK_INTERVAL = 256;
+	/**
+	 * The time, from <code>System.nanoTime</code>, at which searches stop.
+	 */
+	private final long deadline;
+	/**
+	 * Whether there is a deadline at all.
+	 */
+	private final boolean hasDeadline;
+	/**
+	 * The most states searches may expand.
+	 */
+	private final long maximumExpanded;
+	/**
+	 * Set when the search is cancelled, or once any limit has been reached so
+	 * that every thread of a search stops.
+	 */
+	private volatile SearchResult.Status stopped = null;
+
+	/**
+	 * Creates limits that never stop a search unless it is cancelled.
+	 */
+	public SearchLimits() {
+		this(0, 0);
+	}
+
+	/**
+	 * Creates limits with a deadline and a number of states.
+	 *
+	 * @param timeLimit
+	 *            The time in milliseconds, from now, that searches may run
+	 *            for, or 0 for no limit.
+	 * @param maximumExpanded
+	 *            The most states searches may expand, or 0 for no limit.
+	 */
+	public SearchLimits(long timeLimit, long maximumExpanded) {
+		this.hasDeadline = timeLimit > 0;
+		this.deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeLimit));
+		this.maximumExpanded = maximumExpanded > 0 ? maximumExpanded
+				: Long.MAX_VALUE;
+	}
+
+	/**
+	 * Creates limits from the <code>puzzle.limit.time</code> (in
+	 * milliseconds) and <code>puzzle.limit.nodes</code> system properties,
+	 * neither of which limits searches if it isn't set.
+	 *
+	 * @return the limits, starting from now.
+	 */
+	public static SearchLimits fromProperties() {
+		return new SearchLimits(Long.getLong("puzzle.limit.time", 0),
+				Long.getLong("puzzle.limit.nodes", 0));
+	}
+
+	/**
+	 * Cancels any search given these limits, which stops the next time it
+	 * checks them. May be called from any thread.
+	 */
+	public void cancel() {
+		if (stopped == null) {
+			stopped = SearchResult.Status.CANCELLED;
+		}
+	}
+
+	/**
+	 * Determines whether the limits have been cancelled.
+	 *
+	 * @return true if <code>cancel</code> has been called.
+	 */
+	public boolean isCancelled() {
+		return stopped == SearchResult.Status.CANCELLED;
+	}
+
+	/**
+	 * Checks the limits, as a search does before it expands a state.
+	 *
+	 * @param expanded
+	 *            The number of states the search has expanded so far.
+	 * @return null if the search may go on, otherwise the reason it must stop:
+	 *         <code>TIMED_OUT</code>, <code>NODE_LIMIT</code> or
+	 *         <code>CANCELLED</code>.
+	 */
+	public SearchResult.Status check(long expanded) {
+		SearchResult.Status reason = stopped;
+		if (reason != null) {
+			return reason;
+		}
+		if (expanded >= maximumExpanded) {
+			reason = SearchResult.Status.NODE_LIMIT;
+		} else if (hasDeadline && expanded % CLOCK_INTERVAL == 0
+				&& System.nanoTime() > deadline) {
+			reason = SearchResult.Status.TIMED_OUT;
+		} else {
+			return null;
+		}
+		stopped = reason;
+		return reason;
+	}
+
+	/**
+	 * Checks the limits without counting a state, as a search does between
+	 * stages of its work, reading the clock every time.
+	 *
+	 * @return null if the search may go on, otherwise the reason it must stop.
+	 */
+	public SearchResult.Status check() {
+		SearchResult.Status reason = stopped;
+		if (reason == null && hasDeadline && System.nanoTime() > deadline) {
+			reason = SearchResult.Status.TIMED_OUT;
+			stopped = reason;
+		}
+		return reason;
+	}
+}
@@ -0,0 +1,278 @@
+/**
+ * What a search algorithm returns: the path it found, if it found one, along
+ * with the statistics it kept while searching and how much longer than the
+ * shortest path the path can be.
+ *
+ * A search that was stopped by its <code>SearchLimits</code> before it
+ * finished says why in its status, and instead of a path it may give the path
+ * to the most promising state it reached: the one with the lowest heuristic
+ * estimate for the searches that use one, or the last state expanded for
+ * those that don't.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class SearchResult {
+	/**
+	 * What became of a search.
+	 */
+	public enum Status {
+		/**
+		 * A path to the target was found.
+		 */
+		SOLVED("solved"),
+		/**
+		 * The search finished without finding a path to the target.
+		 */
+		FAILED("failed"),
+		/**
+		 * The target can't be reached from the start state, so no search was
+		 * carried out.
+		 */
+		UNSOLVABLE("unsolvable"),
+		/**
+		 * The search ran out of time.
+		 */
+		TIMED_OUT("timeout"),
+		/**
+		 * The search expanded as many states as it was allowed to.
+		 */
+		NODE_LIMIT("node limit"),
+		/**
+		 * The search was cancelled.
+		 */
+		CANCELLED("cancelled");
+
+		/**
+		 * The name of the status in the program's output.
+		 */
+		private final String label;
+
+		/**
+		 * Creates a status.
+		 *
+		 * @param label
+		 *            The name of the status in the program's output.
+		 */
+		Status(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns the name of the status as the program writes it.
+		 *
+		 * @return the name, such as "solved" or "timeout".
+		 */
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/**
+	 * What became of the search.
+	 */
+	private final Status status;
+	/**
+	 * The path from the start state to the target state if one was found,
+	 * otherwise the path to the most promising state reached, or null.
+	 */
+	private final Path path;
+	/**
+	 * The statistics kept while searching.
+	 */
+	private final SearchStats stats;
+	/**
+	 * The most times longer than the shortest path the path can be.
+	 */
+	private final double bound;
+	/**
+	 * The heuristic estimate for the end of the partial path, or -1 if it
+	 * isn't known.
+	 */
+	private final int partialEstimate;
+
+	/**
+	 * Creates the result of a search that only finds shortest paths.
+	 *
+	 * @param path
+	 *            The path found, or null if there isn't one.
+	 * @param stats
+	 *            The statistics kept while searching, with every phase
+	 *            finished.
+	 */
+	public SearchResult(Path path, SearchStats stats) {
+		this(path, stats, 1);
+	}
+
+	/**
+	 * Creates the result of a search that may find a path longer than the
+	 * shortest.
+	 *
+	 * @param path
+	 *            The path found, or null if there isn't one.
+	 * @param stats
+	 *            The statistics kept while searching, with every phase
+	 *            finished.
+	 * @param bound
+	 *            The most times longer than the shortest path the path has
+	 *            been proven to be, or <code>Double.POSITIVE_INFINITY</code>
+	 *            if the search can't say.
+	 */
+	public SearchResult(Path path, SearchStats stats, double bound) {
+		this(path == null ? Status.FAILED : Status.SOLVED, path, stats, bound,
+				-1);
+	}
+
+	/**
+	 * Creates the result of a search that was stopped before it finished, or
+	 * that was never carried out.
+	 *
+	 * @param status
+	 *            Why the search stopped or wasn't carried out.
+	 * @param partialPath
+	 *            The path to the most promising state reached, or null if
+	 *            the search doesn't keep one.
+	 * @param partialEstimate
+	 *            The heuristic estimate for the end of the partial path, or
+	 *            -1 if it isn't known.
+	 * @param stats
+	 *            The statistics kept while searching, with every phase
+	 *            finished.
+	 */
+	public SearchResult(Status status, Path partialPath, int partialEstimate,
+			SearchStats stats) {
+		this(status, partialPath, stats, Double.POSITIVE_INFINITY,
+				partialEstimate);
+	}
+
+	/**
+	 * Creates a result.
+	 *
+	 * @param status
+	 *            What became of the search.
+	 * @param path
+	 *            The path found, or the partial path.
+	 * @param stats
+	 *            The statistics kept while searching.
+	 * @param bound
+	 *            The suboptimality bound of the path.
+	 * @param partialEstimate
+	 *            The estimate for the end of the partial path, or -1.
+	 */
+	private SearchResult(Status status, Path path, SearchStats stats,
+			double bound, int partialEstimate) {
+		this.status = status;
+		this.path = path;
+		this.stats = stats;
+		this.bound = bound;
+		this.partialEstimate = partialEstimate;
+	}
+
+	/**
+	 * Creates the same result for a path that has been turned in to a path
+	 * for another start state, such as one that has been relabeled or
+	 * reflected back.
+	 *
+	 * @param mapped
+	 *            The path or partial path for the other start state.
+	 * @return the new result.
+	 */
+	public SearchResult withPath(Path mapped) {
+		return new SearchResult(status, mapped, stats, bound, partialEstimate);
+	}
+
+	/**
+	 * Returns what became of the search.
+	 *
+	 * @return the status.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the path the search found.
+	 *
+	 * @return the path from the start state to the target state, or null if
+	 *         none was found.
+	 */
+	public Path getPath() {
+		return status == Status.SOLVED ? path : null;
+	}
+
+	/**
+	 * Returns the path to the most promising state a search reached before it
+	 * was stopped.
+	 *
+	 * @return the partial path, or null if the search was not stopped or
+	 *         doesn't keep one.
+	 */
+	public Path getPartialPath() {
+		return status == Status.SOLVED ? null : path;
+	}
+
+	/**
+	 * Returns the heuristic estimate of the number of moves left from the end
+	 * of the partial path to the target.
+	 *
+	 * @return the estimate, or -1 if it isn't known.
+	 */
+	public int getPartialEstimate() {
+		return partialEstimate;
+	}
+
+	/**
+	 * Determines whether the search found a path.
+	 *
+	 * @return true if a path was found.
+	 */
+	public boolean isSolved() {
+		return status == Status.SOLVED;
+	}
+
+	/**
+	 * Determines whether the search was stopped by its limits before it
+	 * finished.
+	 *
+	 * @return true if the search timed out, reached its node limit or was
+	 *         cancelled.
+	 */
+	public boolean isStopped() {
+		return status == Status.TIMED_OUT || status == Status.NODE_LIMIT
+				|| status == Status.CANCELLED;
+	}
+
+	/**
+	 * Returns the statistics kept while searching.
+	 *
+	 * @return the statistics.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Returns the suboptimality bound of the path: its length is at most this
+	 * many times the length of the shortest path.
+	 *
+	 * @return 1 if the path is a shortest path, more if it may not be, or
+	 *         <code>Double.POSITIVE_INFINITY</code> if nothing is known.
+	 */
+	public double getBound() {
+		return bound;
+	}
+
+	/**
+	 * Writes the suboptimality bound for the results, to three decimal places
+	 * at most.
+	 *
+	 * @return the bound, or an empty string if nothing is known.
+	 */
+	public String formatBound() {
+		if (Double.isInfinite(bound)) {
+			return "";
+		}
+		return String.valueOf(Math.round(bound * 1000) / 1000.0);
+	}
+}
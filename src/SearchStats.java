@@ -0,0 +1,317 @@
+/**
+ * The measurements taken during one run of a search algorithm: how many
+ * states it generated, expanded and threw away, how large its lists grew and
+ * how long each phase of the search took.
+ *
+ * The counts are kept by the search as it goes, so they cost an increment
+ * each. The times are taken with <code>System.nanoTime</code> at the start of
+ * each phase:
+ * <ul>
+ * <li>setup: building the heuristic and the search's data structures,</li>
+ * <li>search: the search itself, up to finding the target or giving up,</li>
+ * <li>path: working out the path from the search's records.</li>
+ * </ul>
+ *
+ * The statistics can be written as a line of JSON or of comma separated
+ * values, so that the results of many runs can be collected and compared.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class SearchStats {
+	/**
+	 * The names of the values in a line written by <code>toCsv</code>.
+	 */
+	public static final String CSV_HEADER = "generated,expanded,duplicates,reopened,peakOpen,peakClosed,setupNanos,searchNanos,pathNanos";
+	/**
+	 * The number of states generated as children of expanded states.
+	 */
+	private long generated = 0;
+	/**
+	 * The number of states whose children were generated.
+	 */
+	private long expanded = 0;
+	/**
+	 * The number of generated states thrown away because they had already been
+	 * reached at no greater cost.
+	 */
+	private long duplicates = 0;
+	/**
+	 * The number of states that had already been worked on but were put back
+	 * in the open list because a cheaper path to them was found.
+	 */
+	private long reopened = 0;
+	/**
+	 * The most states waiting to be worked on at any one time.
+	 */
+	private long peakOpen = 0;
+	/**
+	 * The most states recorded as already reached at any one time.
+	 */
+	private long peakClosed = 0;
+	/**
+	 * The time taken to set the search up, in nanoseconds.
+	 */
+	private long setupTime = 0;
+	/**
+	 * The time taken by the search itself, in nanoseconds.
+	 */
+	private long searchTime = 0;
+	/**
+	 * The time taken to work out the path, in nanoseconds.
+	 */
+	private long pathTime = 0;
+	/**
+	 * The time the current phase started, from <code>System.nanoTime</code>.
+	 */
+	private long phaseStart;
+
+	/**
+	 * Creates a set of statistics with every count at zero, and starts timing
+	 * the setup phase.
+	 */
+	public SearchStats() {
+		phaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Counts a generated state.
+	 */
+	public void addGenerated() {
+		generated++;
+	}
+
+	/**
+	 * Counts an expanded state.
+	 */
+	public void addExpanded() {
+		expanded++;
+	}
+
+	/**
+	 * Counts a generated state thrown away as a duplicate.
+	 */
+	public void addDuplicate() {
+		duplicates++;
+	}
+
+	/**
+	 * Counts a state put back in the open list.
+	 */
+	public void addReopened() {
+		reopened++;
+	}
+
+	/**
+	 * Records the number of states waiting to be worked on, keeping the
+	 * largest.
+	 *
+	 * @param size
+	 *            The current size of the open list, queue or stack.
+	 */
+	public void updateOpenSize(long size) {
+		if (size > peakOpen) {
+			peakOpen = size;
+		}
+	}
+
+	/**
+	 * Records the number of states reached, keeping the largest.
+	 *
+	 * @param size
+	 *            The current size of the closed set.
+	 */
+	public void updateClosedSize(long size) {
+		if (size > peakClosed) {
+			peakClosed = size;
+		}
+	}
+
+	/**
+	 * Ends the setup phase and starts timing the search.
+	 */
+	public void startSearch() {
+		long now = System.nanoTime();
+		setupTime += now - phaseStart;
+		phaseStart = now;
+	}
+
+	/**
+	 * Ends the search phase and starts timing the working out of the path.
+	 */
+	public void startPath() {
+		long now = System.nanoTime();
+		searchTime += now - phaseStart;
+		phaseStart = now;
+	}
+
+	/**
+	 * Ends the path phase.
+	 */
+	public void finish() {
+		long now = System.nanoTime();
+		pathTime += now - phaseStart;
+		phaseStart = now;
+	}
+
+	/**
+	 * Adds the counts of another set of statistics to these, as when a search
+	 * is split between threads that each keep their own while one thread
+	 * times the phases. The peak sizes are added too, as each thread's lists
+	 * are separate, so they are an upper bound on the peak of them all
+	 * together.
+	 *
+	 * @param other
+	 *            The statistics to add.
+	 */
+	public void add(SearchStats other) {
+		generated += other.generated;
+		expanded += other.expanded;
+		duplicates += other.duplicates;
+		reopened += other.reopened;
+		peakOpen += other.peakOpen;
+		peakClosed += other.peakClosed;
+	}
+
+	/**
+	 * Returns the number of states generated.
+	 *
+	 * @return the number of states generated.
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * Returns the number of states expanded.
+	 *
+	 * @return the number of states expanded.
+	 */
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Returns the number of generated states thrown away as duplicates.
+	 *
+	 * @return the number of duplicates.
+	 */
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * Returns the number of states put back in the open list.
+	 *
+	 * @return the number of states reopened.
+	 */
+	public long getReopened() {
+		return reopened;
+	}
+
+	/**
+	 * Returns the most states waiting to be worked on at any one time.
+	 *
+	 * @return the peak size of the open list.
+	 */
+	public long getPeakOpen() {
+		return peakOpen;
+	}
+
+	/**
+	 * Returns the most states recorded as reached at any one time.
+	 *
+	 * @return the peak size of the closed set.
+	 */
+	public long getPeakClosed() {
+		return peakClosed;
+	}
+
+	/**
+	 * Returns the time taken to set the search up.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	public long getSetupTime() {
+		return setupTime;
+	}
+
+	/**
+	 * Returns the time taken by the search itself.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	public long getSearchTime() {
+		return searchTime;
+	}
+
+	/**
+	 * Returns the time taken to work out the path.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	public long getPathTime() {
+		return pathTime;
+	}
+
+	/**
+	 * Returns the time taken by every phase together.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	public long getTotalTime() {
+		return setupTime + searchTime + pathTime;
+	}
+
+	/**
+	 * Writes the statistics as comma separated values, in the order given by
+	 * <code>CSV_HEADER</code>.
+	 *
+	 * @return the values.
+	 */
+	public String toCsv() {
+		return generated + "," + expanded + "," + duplicates + "," + reopened
+				+ "," + peakOpen + "," + peakClosed + "," + setupTime + ","
+				+ searchTime + "," + pathTime;
+	}
+
+	/**
+	 * Writes the statistics as a JSON object on a single line.
+	 *
+	 * @return the JSON object.
+	 */
+	public String toJson() {
+		return "{\"generated\":" + generated + ",\"expanded\":" + expanded
+				+ ",\"duplicates\":" + duplicates + ",\"reopened\":" + reopened
+				+ ",\"peakOpen\":" + peakOpen + ",\"peakClosed\":" + peakClosed
+				+ ",\"setupNanos\":" + setupTime + ",\"searchNanos\":"
+				+ searchTime + ",\"pathNanos\":" + pathTime + "}";
+	}
+
+	/**
+	 * Returns the statistics in a form for people to read, one per line.
+	 *
+	 * @return the statistics.
+	 */
+	@Override
+	public String toString() {
+		return "Nodes generated: " + generated + "\nNodes expanded: "
+				+ expanded + "\nDuplicates pruned: " + duplicates
+				+ "\nNodes reopened: " + reopened + "\nPeak open list size: "
+				+ peakOpen + "\nPeak closed set size: " + peakClosed
+				+ "\nSetup time: " + millis(setupTime) + " ms"
+				+ "\nSearch time: " + millis(searchTime) + " ms"
+				+ "\nPath time: " + millis(pathTime) + " ms\n";
+	}
+
+	/**
+	 * Converts a time from nanoseconds to milliseconds for printing.
+	 *
+	 * @param nanos
+	 *            The time in nanoseconds.
+	 * @return the time in milliseconds, to three decimal places.
+	 */
+	private static String millis(long nanos) {
+		return String.format("%.3f", nanos / 1e6);
+	}
+}
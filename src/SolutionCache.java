@@ -0,0 +1,300 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the paths found for recent puzzles, so that a puzzle that has
+ * already been solved, or one equivalent to it, is answered without searching
+ * again.
+ *
+ * Two puzzles are equivalent if one can be turned in to the other by giving
+ * the tiles different numbers, or by reflecting (or, on a square board,
+ * rotating) the board, as the moves that solve one then solve the other once
+ * they are reflected in the same way. Each puzzle is stored under a canonical
+ * form: the board is turned each way it can be, the tiles are numbered 1, 2, 3
+ * and so on in the order of their cells in the target, with the gap left as
+ * 0, and the form whose start state and gap position in the target come first
+ * is kept, as worked out by <code>Relabeling</code>. As every target is
+ * numbered in the same order, the key is the numbered start state and the
+ * cell of the gap in the target.
+ *
+ * The paths are stored as the moves of the gap from the canonical start, and
+ * reflected back on the way out. Once the cache holds the given number of
+ * paths, the one used least recently is forgotten to make room for the next.
+ * The cache may be shared between threads.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class SolutionCache {
+	/**
+	 * The paths, kept in the order they were last used, eldest first.
+	 */
+	private final LinkedHashMap<Key, Entry> paths;
+	/**
+	 * The number of lookups that found a path.
+	 */
+	private long hits = 0;
+	/**
+	 * The number of lookups that didn't.
+	 */
+	private long misses = 0;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity
+	 *            The most paths to keep.
+	 */
+	public SolutionCache(final int capacity) {
+		this.paths = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Looks up the path for a puzzle, or any puzzle equivalent to it, solved
+	 * in the same way.
+	 *
+	 * @param solvedBy
+	 *            A description of how the path was found, so that paths from
+	 *            algorithms that don't find the shortest one aren't given for
+	 *            those that do.
+	 * @param startState
+	 *            The state the puzzle starts in.
+	 * @param targetState
+	 *            The state to get to.
+	 * @return the path from the start state to the target state, with the
+	 *         bound it was found with and statistics of the lookup, or null if
+	 *         the puzzle isn't in the cache.
+	 */
+	public SearchResult get(String solvedBy, GridState startState,
+			GridState targetState) {
+		SearchStats stats = new SearchStats();
+		Canonical canonical = new Canonical(startState, targetState);
+		Entry stored;
+		synchronized (this) {
+			stored = paths.get(new Key(solvedBy, canonical));
+			if (stored == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		stats.startSearch();
+		stats.startPath();
+		Path path = canonical.relabeling.mapBack(stored.path, startState);
+		stats.finish();
+		return new SearchResult(path, stats, stored.bound);
+	}
+
+	/**
+	 * Stores the path for a puzzle.
+	 *
+	 * @param solvedBy
+	 *            A description of how the path was found.
+	 * @param targetState
+	 *            The state the path leads to.
+	 * @param result
+	 *            The result of the search, whose path starts from the start
+	 *            state of the puzzle.
+	 */
+	public void put(String solvedBy, GridState targetState, SearchResult result) {
+		Path path = result.getPath();
+		Canonical canonical = new Canonical(path.getStartState(), targetState);
+		Path stored = new Path(canonical.startState, path.length());
+		for (int i = 0; i < path.length(); i++) {
+			stored.setMove(i,
+					canonical.relabeling.applyToMove(path.getMove(i)));
+		}
+		synchronized (this) {
+			paths.put(new Key(solvedBy, canonical), new Entry(stored,
+					result.getBound()));
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that found a path.
+	 *
+	 * @return the number of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that didn't find a path.
+	 *
+	 * @return the number of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of paths in the cache.
+	 *
+	 * @return the number of paths.
+	 */
+	public synchronized int size() {
+		return paths.size();
+	}
+
+	/**
+	 * Returns the counts of hits and misses and the size of the cache, for
+	 * people to read.
+	 *
+	 * @return the counts.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Solution cache: " + hits + " hits, " + misses + " misses, "
+				+ paths.size() + " paths";
+	}
+
+	/**
+	 * The canonical form of a puzzle, and the reflection of the board that
+	 * gives it.
+	 */
+	private static final class Canonical {
+		/**
+		 * The start state once reflected and numbered.
+		 */
+		private GridState startState;
+		/**
+		 * The reflection and numbering that give the canonical form.
+		 */
+		private Relabeling relabeling;
+
+		/**
+		 * Works out the canonical form of a puzzle.
+		 *
+		 * @param startState
+		 *            The state the puzzle starts in.
+		 * @param targetState
+		 *            The state to get to.
+		 */
+		Canonical(GridState startState, GridState targetState) {
+			Board board = startState.getBoard();
+			for (int symmetry = 0; symmetry < Relabeling.SYMMETRIES; symmetry++) {
+				if (!Relabeling.fits(board, symmetry)) {
+					continue;
+				}
+				Relabeling candidate = new Relabeling(targetState, symmetry);
+				GridState start = candidate.apply(startState);
+				if (relabeling == null
+						|| candidate.getTargetBlank() < relabeling
+								.getTargetBlank()
+						|| (candidate.getTargetBlank() == relabeling
+								.getTargetBlank() && compare(start,
+								this.startState) < 0)) {
+					relabeling = candidate;
+					this.startState = start;
+				}
+			}
+		}
+
+		/**
+		 * Compares two states on the same board cell by cell.
+		 *
+		 * @param first
+		 *            The first state.
+		 * @param second
+		 *            The second state.
+		 * @return a negative number, zero or a positive number as the first
+		 *         state comes before, is the same as or comes after the
+		 *         second.
+		 */
+		private static int compare(GridState first, GridState second) {
+			int cells = first.getBoard().getCellCount();
+			for (int cell = 0; cell < cells; cell++) {
+				if (first.getTile(cell) != second.getTile(cell)) {
+					return first.getTile(cell) - second.getTile(cell);
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * A path as it is stored, from the canonical start, and the bound it was
+	 * found with.
+	 */
+	private static final class Entry {
+		/**
+		 * The moves from the canonical start.
+		 */
+		private final Path path;
+		/**
+		 * The suboptimality bound of the path.
+		 */
+		private final double bound;
+
+		/**
+		 * Creates an entry.
+		 *
+		 * @param path
+		 *            The moves from the canonical start.
+		 * @param bound
+		 *            The suboptimality bound of the path.
+		 */
+		Entry(Path path, double bound) {
+			this.path = path;
+			this.bound = bound;
+		}
+	}
+
+	/**
+	 * The key a path is stored under: how it was found and the canonical form
+	 * of its puzzle.
+	 */
+	private static final class Key {
+		/**
+		 * A description of how the path was found.
+		 */
+		private final String solvedBy;
+		/**
+		 * The canonical start state.
+		 */
+		private final GridState startState;
+		/**
+		 * The cell of the gap in the canonical target.
+		 */
+		private final int targetBlank;
+
+		/**
+		 * Creates the key for a puzzle.
+		 *
+		 * @param solvedBy
+		 *            A description of how the path was found.
+		 * @param canonical
+		 *            The canonical form of the puzzle.
+		 */
+		Key(String solvedBy, Canonical canonical) {
+			this.solvedBy = solvedBy;
+			this.startState = canonical.startState;
+			this.targetBlank = canonical.relabeling.getTargetBlank();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return targetBlank == other.targetBlank
+					&& solvedBy.equals(other.solvedBy)
+					&& startState.equals(other.startState);
+		}
+
+		@Override
+		public int hashCode() {
+			return (startState.hashCode() * 31 + targetBlank) * 31
+					+ solvedBy.hashCode();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Determines whether the target state can be reached from the start state at
+ * all, so that an impossible puzzle can be turned away before a search
+ * explores every state it can reach.
+ * 
+ * Every move swaps the gap with a tile, so it changes the parity of the
+ * permutation that takes the start grid to the target grid and the parity of
+ * the gap's Manhattan distance from its target cell together. The target can
+ * therefore only be reached when those two parities match, and on boards with
+ * at least two rows and two columns that is also enough.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class Solvability {
+
+	/**
+	 * Determines whether the target can be reached from the start by sliding
+	 * tiles, in time linear in the number of cells.
+	 * 
+	 * @param start
+	 *            The state the puzzle starts in.
+	 * @param target
+	 *            The state the puzzle is to be put in to.
+	 * @return true if there is a path from the start to the target.
+	 */
+	public static boolean isSolvable(GridState start, GridState target) {
+		Board board = start.getBoard();
+		if (!board.equals(target.getBoard())) {
+			return false;
+		}
+		int cellCount = board.getCellCount();
+		int[] targetCells = new int[cellCount];
+		for (int cell = 0; cell < cellCount; cell++) {
+			targetCells[target.getTile(cell)] = cell;
+		}
+
+		// A single row or column can't change the order of its tiles.
+		if (board.getRows() == 1 || board.getColumns() == 1) {
+			int previous = -1;
+			for (int cell = 0; cell < cellCount; cell++) {
+				int tile = start.getTile(cell);
+				if (tile != 0) {
+					if (targetCells[tile] < previous) {
+						return false;
+					}
+					previous = targetCells[tile];
+				}
+			}
+			return true;
+		}
+
+		// The parity of a permutation is the parity of the number of cells
+		// minus the number of cycles it has.
+		boolean[] visited = new boolean[cellCount];
+		int cycles = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			if (visited[cell]) {
+				continue;
+			}
+			cycles++;
+			for (int next = cell; !visited[next]; next = targetCells[start
+					.getTile(next)]) {
+				visited[next] = true;
+			}
+		}
+		int permutationParity = (cellCount - cycles) & 1;
+
+		int columns = board.getColumns();
+		int startBlank = start.getBlankIndex();
+		int targetBlank = target.getBlankIndex();
+		int blankDistance = Math.abs(startBlank / columns - targetBlank
+				/ columns)
+				+ Math.abs(startBlank % columns - targetBlank % columns);
+		return permutationParity == (blankDistance & 1);
+	}
+}
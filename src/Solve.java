@@ -17,22 +17,47 @@ public class Solve {
 	 *            name of the files containing a representation of the initial
 	 *            state and target state respectively. The third command line
 	 *            argument is used to represent the algorithm the user wishes to
-	 *            use to solve the problem.
+	 *            use to solve the problem. For "idastar", "biastar",
+	 *            "hdastar", "smastar", "wastar" and "arastar", an optional
+	 *            fourth argument names
+	 *            the heuristic to use ("manhattan" if it is left out). The
+	 *            <code>puzzle.format</code> system property chooses how the
+	 *            result is written: "boards" (the default), "moves" or "json",
+	 *            as described by <code>ResultWriter</code>. The
+	 *            <code>puzzle.limit.time</code> and
+	 *            <code>puzzle.limit.nodes</code> system properties stop the
+	 *            search after that many milliseconds or expanded nodes.
 	 * 
 	 * @throws FileNotFoundException
 	 */
 	public static void main(String args[]) throws FileNotFoundException {
-		Path path = new Path();
+		ResultWriter out;
+		try {
+			out = new ResultWriter(System.out,
+					System.getProperty("puzzle.format"));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		try {
+			solve(args, out);
+		} finally {
+			out.flush();
+		}
+	}
 
-		// Stores the start time of the algorithm's run
-		long startTime = System.currentTimeMillis();
-		// Stores end time of the algorithm's run
-		long endTime = 0;
-		int nodesExpanded = 0;
+	/**
+	 * Reads in the puzzle, solves it and writes the result.
+	 * 
+	 * @param args
+	 *            The arguments passed in from the command line.
+	 * @param out
+	 *            Where everything is written.
+	 * @throws FileNotFoundException
+	 */
+	private static void solve(String args[], ResultWriter out)
+			throws FileNotFoundException {
 		FileIO fileIO = new FileIO();
-		BreadthFirstSearch bfs = new BreadthFirstSearch();
-		DepthFirstSearch dfs = new DepthFirstSearch();
-		AStarSearch astar = new AStarSearch();
 
 		// Reads in the file that contains the data for the initial state
 		fileIO.readFile(args[0], "initial");
@@ -40,59 +65,45 @@ public class Solve {
 		// Reads in the file that contains the data for the target state
 		fileIO.readFile(args[1], "target");
 
-		// Carries out the appropriate action depending on the third command
-		// line argument entered.
-		switch (args[2]) {
-		case "bfs":
-			startTime = System.currentTimeMillis();
-			System.out.println("Solving with bfs...");
-			path = bfs
-					.findPath(fileIO.getStartState(), fileIO.getTargetState());
-			nodesExpanded = bfs.getNodesExpanded();
-			endTime = System.currentTimeMillis();
-			break;
-		case "dfs":
-			startTime = System.currentTimeMillis();
-			System.out.println("Solving with dfs...");
-			path = dfs
-					.findPath(fileIO.getStartState(), fileIO.getTargetState());
-			endTime = System.currentTimeMillis();
-			nodesExpanded = dfs.getNodesExpanded();
-			break;
-		case "astar1":
-			startTime = System.currentTimeMillis();
-			System.out
-					.println("Solving with A Star Search using the Hamming Distance Heuristic...");
-			path = astar.findPath(fileIO.getStartState(),
-					fileIO.getTargetState(), "hamming");
-			nodesExpanded = astar.getNodesExpanded();
-			endTime = System.currentTimeMillis();
-			break;
-		case "astar2":
-			startTime = System.currentTimeMillis();
-			System.out
-					.println("Solving with A Star search using the Manhattan Distance Heuristic...");
-			path = astar.findPath(fileIO.getStartState(),
-					fileIO.getTargetState(), "manhattan");
-			nodesExpanded = astar.getNodesExpanded();
-			endTime = System.currentTimeMillis();
-			break;
-		default:
-			System.out
-					.println("The third argument entered in the command line was not valid.");
-			endTime = System.currentTimeMillis();
-			break;
+		// To confirm the initial and target states that were loaded in to the
+		// user.
+		out.writeStates(fileIO.getStartState(), fileIO.getTargetState());
+
+		if (!fileIO.getStartState().getBoard()
+				.equals(fileIO.getTargetState().getBoard())) {
+			out.writeFailure("error",
+					"The initial and target states are not the same size.");
+			return;
 		}
 
-		// Print the path the relevant algorithm found.
-		for (GridState pathRoute : path.getPath()) {
-			System.out.print(pathRoute.toString());
-			System.out.println("===");
+		// Chooses the algorithm depending on the third command line argument
+		// entered.
+		Solver solver;
+		try {
+			solver = new Solver(args[2], args.length > 3 ? args[3] : null);
+		} catch (IllegalArgumentException e) {
+			out.writeFailure("error",
+					"The third argument entered in the command line was not valid: "
+							+ e.getMessage());
+			return;
 		}
-		System.out.println("The number of nodes expanded was " + nodesExpanded);
-		// Prints out the amount of time the algorithm took to execute in
-		// milliseconds.
-		System.out.println("Total time to execute algorithm: "
-				+ (endTime - startTime) + " milliseconds.");
+
+		out.writeProgress("Solving with " + solver.getDescription() + "...");
+		// Nothing is written out while the algorithm runs, so the time
+		// measured is the search's alone. The times are taken from the
+		// monotonic clock so the measurement isn't thrown by clock changes.
+		out.flush();
+		long startTime = System.nanoTime();
+		SearchResult result;
+		try {
+			result = solver.solve(fileIO.getStartState(),
+					fileIO.getTargetState());
+		} catch (IllegalArgumentException e) {
+			out.writeFailure("error", e.getMessage());
+			return;
+		}
+		long endTime = System.nanoTime();
+
+		out.writeResult(solver.getDescription(), result, endTime - startTime);
 	}
 }
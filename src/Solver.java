@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Runs one of the search algorithms by name, so that every way of running the
+ * program chooses algorithms in the same way.
+ * 
+ * A new instance of the search class is created for every puzzle, so a
+ * <code>Solver</code> can be used for any number of puzzles, one at a time.
+ * Solvers are not shared between threads.
+ * 
+ * If the <code>puzzle.cache.size</code> system property is set, the paths
+ * found are kept in a <code>SolutionCache</code> of that many paths shared by
+ * every solver, and a puzzle equivalent to one already solved in the same way
+ * is answered from it without searching.
+ * 
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ * 
+ */
+public class Solver {
+	/**
+	 * The heuristic used by algorithms that take one when none is named.
+	 */
+	public static final String DEFAULT_HEURISTIC = "manhattan";
+	/**
+	 * The weight used by "wastar" unless the <code>puzzle.wastar.weight</code>
+	 * system property gives another.
+	 */
+	public static final double DEFAULT_WEIGHT = 2;
+	/**
+	 * The paths found by every solver, or null if they aren't kept.
+	 */
+	private static final SolutionCache CACHE = Integer.getInteger(
+			"puzzle.cache.size", 0) > 0 ? new SolutionCache(
+			Integer.getInteger("puzzle.cache.size")) : null;
+	/**
+	 * The name of the algorithm to run.
+	 */
+	private final String algorithm;
+	/**
+	 * The name of the heuristic to use for the algorithms that take one.
+	 */
+	private final String heuristic;
+	/**
+	 * The weight on the heuristic for weighted A*.
+	 */
+	private final double weight;
+
+	/**
+	 * Creates a solver for the named algorithm.
+	 * 
+	 * @param algorithm
+	 *            One of "bfs", "dfs", "astar1" (Hamming Distance), "astar2"
+	 *            (Manhattan Distance), "astar3" (pattern databases),
+	 *            "idastar", "bibfs", "biastar", "table" (the precomputed
+	 *            8-puzzle distance table), "pbfs" (parallel breadth first
+	 *            search), "ebfs" (external memory breadth first search),
+	 *            "hdastar" (hash distributed parallel A*), "smastar"
+	 *            (memory-bounded A*), "wastar" (weighted A*, with the weight
+	 *            given by the <code>puzzle.wastar.weight</code> system
+	 *            property) or "arastar" (anytime A*, set up by the
+	 *            <code>puzzle.ara.*</code> system properties).
+	 * @param heuristic
+	 *            The name of the heuristic for "idastar", "biastar",
+	 *            "hdastar", "smastar", "wastar" and "arastar", or
+	 *            null for <code>DEFAULT_HEURISTIC</code>. Ignored by the other
+	 *            algorithms.
+	 * @throws IllegalArgumentException
+	 *             if there is no algorithm with the given name, or the weight
+	 *             for "wastar" isn't a number from 1 to 1000.
+	 */
+	public Solver(String algorithm, String heuristic) {
+		double weight = DEFAULT_WEIGHT;
+		switch (algorithm) {
+		case "bfs":
+		case "dfs":
+		case "bibfs":
+		case "pbfs":
+		case "ebfs":
+		case "table":
+			this.heuristic = null;
+			break;
+		case "astar1":
+			this.heuristic = "hamming";
+			break;
+		case "astar2":
+			this.heuristic = "manhattan";
+			break;
+		case "astar3":
+			this.heuristic = "pdb";
+			break;
+		case "idastar":
+		case "biastar":
+		case "hdastar":
+		case "smastar":
+		case "arastar":
+			this.heuristic = heuristic == null ? DEFAULT_HEURISTIC : heuristic;
+			break;
+		case "wastar":
+			this.heuristic = heuristic == null ? DEFAULT_HEURISTIC : heuristic;
+			weight = Double.parseDouble(System.getProperty(
+					"puzzle.wastar.weight", String.valueOf(DEFAULT_WEIGHT)));
+			// Fails now rather than when the first puzzle is solved.
+			AStarSearch.weightAsFraction(weight);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown algorithm: "
+					+ algorithm);
+		}
+		this.algorithm = algorithm;
+		this.weight = weight;
+	}
+
+	/**
+	 * Returns a description of the algorithm and heuristic, to tell the user
+	 * how the puzzle is being solved.
+	 * 
+	 * @return the description.
+	 */
+	public String getDescription() {
+		switch (algorithm) {
+		case "bfs":
+		case "dfs":
+			return algorithm;
+		case "astar1":
+			return "A Star Search using the Hamming Distance Heuristic";
+		case "astar2":
+			return "A Star search using the Manhattan Distance Heuristic";
+		case "astar3":
+			return "A Star search using the Pattern Database Heuristic";
+		case "idastar":
+			return "Iterative Deepening A Star search using the " + heuristic
+					+ " heuristic";
+		case "bibfs":
+			return "bidirectional bfs";
+		case "pbfs":
+			return "parallel bfs";
+		case "ebfs":
+			return "external memory bfs";
+		case "hdastar":
+			return "hash distributed A Star search using the " + heuristic
+					+ " heuristic";
+		case "smastar":
+			return "memory-bounded A Star search using the " + heuristic
+					+ " heuristic";
+		case "wastar":
+			return "weighted A Star search (w = " + weight + ") using the "
+					+ heuristic + " heuristic";
+		case "arastar":
+			return "anytime A Star search using the " + heuristic
+					+ " heuristic";
+		case "table":
+			return "the precomputed 8-puzzle distance table";
+		default:
+			return "bidirectional A Star search using the " + heuristic
+					+ " heuristic";
+		}
+	}
+
+	/**
+	 * Finds a path from the start state to the target state with the
+	 * algorithm, or takes it from the cache if the puzzle has been solved
+	 * before.
+	 * 
+	 * If the gap of the target is in a corner, the puzzle is first turned in
+	 * to the equivalent one whose target is the standard goal by a
+	 * <code>Relabeling</code>, and the path found is turned back, so the
+	 * pattern databases, distance table and cached paths for the standard
+	 * goal serve every such target.
+	 * 
+	 * The search is limited by the <code>puzzle.limit.time</code> and
+	 * <code>puzzle.limit.nodes</code> system properties, if they are set.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state the algorithm is to try and get to.
+	 * @return the path the algorithm found, or no path if it failed, with the
+	 *         statistics of the search.
+	 * @throws IllegalArgumentException
+	 *             if the algorithm can't solve puzzles of this kind, such as
+	 *             the distance table with a target whose gap isn't in a
+	 *             corner.
+	 */
+	public SearchResult solve(GridState startState, GridState targetState) {
+		return solve(startState, targetState, SearchLimits.fromProperties());
+	}
+
+	/**
+	 * Finds a path from the start state to the target state with the
+	 * algorithm, as <code>solve</code> does, stopping early if the search
+	 * reaches one of the given limits. The distance table looks its paths up
+	 * rather than searching, so it is never stopped.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state the algorithm is to try and get to.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path the algorithm found, or no path if it failed, with the
+	 *         statistics of the search. If the search was stopped, the result
+	 *         says why and may hold the partial path it had found. If the
+	 *         target can't be reached from the start state at all, no search
+	 *         is carried out and the status is <code>UNSOLVABLE</code>.
+	 * @throws IllegalArgumentException
+	 *             if the algorithm can't solve puzzles of this kind.
+	 */
+	public SearchResult solve(GridState startState, GridState targetState,
+			SearchLimits limits) {
+		// Turns away puzzles that can't be solved before any search is
+		// carried out, as the search would otherwise explore every state it
+		// can reach before giving up, or never give up at all.
+		if (!Solvability.isSolvable(startState, targetState)) {
+			SearchStats stats = new SearchStats();
+			stats.startSearch();
+			stats.startPath();
+			stats.finish();
+			return new SearchResult(SearchResult.Status.UNSOLVABLE, null, -1,
+					stats);
+		}
+		Relabeling relabeling = Relabeling.toStandardGoal(targetState);
+		if (relabeling == null) {
+			return solveAsGiven(startState, targetState, limits);
+		}
+		SearchResult result = solveAsGiven(relabeling.apply(startState),
+				relabeling.apply(targetState), limits);
+		Path path = result.isSolved() ? result.getPath() : result
+				.getPartialPath();
+		if (path == null) {
+			return result;
+		}
+		return result.withPath(relabeling.mapBack(path, startState));
+	}
+
+	/**
+	 * Finds a path from the start state to the target state with the
+	 * algorithm, or takes it from the cache if the puzzle has been solved
+	 * before, without relabeling the puzzle first.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state the algorithm is to try and get to.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path the algorithm found, or no path if it failed, with the
+	 *         statistics of the search.
+	 */
+	private SearchResult solveAsGiven(GridState startState,
+			GridState targetState, SearchLimits limits) {
+		if (CACHE == null) {
+			return search(startState, targetState, limits);
+		}
+		String solvedBy = getDescription();
+		SearchResult cached = CACHE.get(solvedBy, startState, targetState);
+		if (cached != null) {
+			return cached;
+		}
+		SearchResult result = search(startState, targetState, limits);
+		if (result.isSolved()) {
+			CACHE.put(solvedBy, targetState, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cache of paths shared by every solver.
+	 * 
+	 * @return the cache, or null if the <code>puzzle.cache.size</code> system
+	 *         property isn't set.
+	 */
+	public static SolutionCache getCache() {
+		return CACHE;
+	}
+
+	/**
+	 * Runs the algorithm to find a path from the start state to the target
+	 * state.
+	 * 
+	 * @param startState
+	 *            The state in which the puzzle starts at.
+	 * @param targetState
+	 *            The state the algorithm is to try and get to.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the path the algorithm found, or no path if it failed, with the
+	 *         statistics of the search.
+	 */
+	private SearchResult search(GridState startState, GridState targetState,
+			SearchLimits limits) {
+		switch (algorithm) {
+		case "bfs":
+			return new BreadthFirstSearch().findPath(startState, targetState,
+					limits);
+		case "dfs":
+			return new DepthFirstSearch().findPath(startState, targetState,
+					limits);
+		case "idastar":
+			return new IterativeDeepeningAStarSearch().findPath(startState,
+					targetState, heuristic, limits);
+		case "bibfs":
+			return new BidirectionalSearch().findPath(startState, targetState,
+					limits);
+		case "pbfs":
+			return new ParallelBreadthFirstSearch().findPath(startState,
+					targetState, limits);
+		case "ebfs":
+			return new ExternalBreadthFirstSearch().findPath(startState,
+					targetState, limits);
+		case "hdastar":
+			return new ParallelAStarSearch().findPath(startState, targetState,
+					heuristic, limits);
+		case "smastar":
+			return new MemoryBoundedAStarSearch().findPath(startState,
+					targetState, heuristic, limits);
+		case "wastar":
+			return new AStarSearch().findPath(startState, targetState,
+					heuristic, weight, limits);
+		case "arastar":
+			return new AnytimeAStarSearch().findPath(startState, targetState,
+					heuristic, limits);
+		case "table":
+			try {
+				return DistanceTable.forCanonicalGoal().findPath(startState,
+						targetState);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		case "biastar":
+			return new BidirectionalSearch().findPath(startState, targetState,
+					heuristic, limits);
+		default:
+			return new AStarSearch().findPath(startState, targetState,
+					heuristic, 1, limits);
+		}
+	}
+}
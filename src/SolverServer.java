@@ -0,0 +1,294 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the program running and solves puzzles as they are sent to it, so the
+ * JVM, the pattern databases and the distance table stay loaded and warmed up
+ * between puzzles rather than being paid for by every run.
+ *
+ * Requests are read one per line, either from standard input or, if a port is
+ * given, from any number of connections to that port on the loopback address.
+ * Each request names the algorithm, optionally the heuristic, and the start
+ * and target states with their tiles in row-major order separated by commas:
+ *
+ * <pre>
+ * astar3 1,2,3,4,0,6,7,5,8;1,2,3,4,5,6,7,8,0
+ * idastar pdb 1,2,3,4,0,6,7,5,8;1,2,3,4,5,6,7,8,0
+ * </pre>
+ *
+ * Each request is solved on a thread of its own, a virtual thread where the
+ * JVM has them, and its result is written back as soon as it is found, in the
+ * same comma separated (or, with the <code>puzzle.format</code> system property
+ * set to "json", JSON) form as <code>BatchSolve</code> writes, numbered by the
+ * line of the request. Results may come back in a different order from the
+ * requests. Blank lines and lines starting with # are skipped.
+ *
+ * The <code>puzzle.server.concurrency</code> system property limits how many
+ * searches run at once (one per processor by default); further requests wait
+ * for one to finish before they are read. Each search is given its own
+ * <code>SearchLimits</code> when it starts: if the
+ * <code>puzzle.server.timeout</code> (or failing that
+ * <code>puzzle.limit.time</code>) system property is set, a search that runs
+ * for longer than that many milliseconds stops and the request is answered
+ * with the status "timeout", and if <code>puzzle.limit.nodes</code> is set, a
+ * search that expands that many states stops with the status "node limit".
+ * Either way the search gives up its place as soon as it stops.
+ * Setting the <code>puzzle.cache.size</code> system property keeps the paths
+ * found in a <code>SolutionCache</code>, whose hits and misses are printed to
+ * standard error whenever the input or a connection is closed.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class SolverServer {
+	/**
+	 * Whether the results are written as JSON rather than comma separated
+	 * values.
+	 */
+	private static final boolean JSON = "json".equals(System
+			.getProperty("puzzle.format"));
+	/**
+	 * Runs each request, and each connection, on a thread of its own.
+	 */
+	private final ExecutorService executor = newThreadPerTaskExecutor();
+	/**
+	 * Holds a permit for each search allowed to run at once.
+	 */
+	private final Semaphore running;
+	/**
+	 * The time a search may run for before it is stopped, in milliseconds,
+	 * or 0 to wait for every search to finish.
+	 */
+	private final long timeout;
+	/**
+	 * The most states a search may expand, or 0 for no limit.
+	 */
+	private final long maximumExpanded;
+
+	/**
+	 * Creates a server.
+	 *
+	 * @param concurrency
+	 *            The most searches to run at once.
+	 * @param timeout
+	 *            The time a search may run for in milliseconds, or 0 for no
+	 *            limit.
+	 * @param maximumExpanded
+	 *            The most states a search may expand, or 0 for no limit.
+	 */
+	public SolverServer(int concurrency, long timeout, long maximumExpanded) {
+		this.running = new Semaphore(concurrency);
+		this.timeout = timeout;
+		this.maximumExpanded = maximumExpanded;
+	}
+
+	/**
+	 * Starts the server, answering requests from standard input until it is
+	 * closed or, if a port is given, from connections to the port until the
+	 * program is stopped.
+	 *
+	 * @param args
+	 *            Optionally the port to listen on.
+	 * @throws IOException
+	 *             if the requests couldn't be read or the port couldn't be
+	 *             listened on.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the last results.
+	 */
+	public static void main(String args[]) throws IOException,
+			InterruptedException {
+		SolverServer server = new SolverServer(Integer.getInteger(
+				"puzzle.server.concurrency", Runtime.getRuntime()
+						.availableProcessors()), Long.getLong(
+				"puzzle.server.timeout", Long.getLong("puzzle.limit.time", 0)),
+				Long.getLong("puzzle.limit.nodes", 0));
+		if (args.length > 0) {
+			server.listen(Integer.parseInt(args[0]));
+		} else {
+			server.serve(System.in, System.out);
+		}
+	}
+
+	/**
+	 * Accepts connections to the port on the loopback address, and answers
+	 * the requests on each until it is closed.
+	 *
+	 * @param port
+	 *            The port to listen on.
+	 * @throws IOException
+	 *             if the port couldn't be listened on.
+	 */
+	public void listen(int port) throws IOException {
+		ServerSocket serverSocket = new ServerSocket(port, 50,
+				InetAddress.getLoopbackAddress());
+		System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+		try {
+			while (true) {
+				final Socket socket = serverSocket.accept();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							serve(socket.getInputStream(),
+									socket.getOutputStream());
+						} catch (IOException e) {
+							System.err.println("Connection failed: "
+									+ e.getMessage());
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} finally {
+							try {
+								socket.close();
+							} catch (IOException e) {
+								// Nothing more can be written to it anyway.
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			serverSocket.close();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Answers every request read from the input, writing the results to the
+	 * output, and returns once the input is closed and every request has been
+	 * answered.
+	 *
+	 * @param input
+	 *            Where the requests are read from.
+	 * @param output
+	 *            Where the results are written.
+	 * @throws IOException
+	 *             if the requests couldn't be read.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a search to be allowed to
+	 *             run or for the last results.
+	 */
+	public void serve(InputStream input, OutputStream output)
+			throws IOException, InterruptedException {
+		final ResultWriter out = new ResultWriter(output, null);
+		if (!JSON) {
+			out.writeLine("line,status,moves,length,bound,"
+					+ SearchStats.CSV_HEADER);
+			out.flush();
+		}
+		// Counts the requests still to be answered, plus one for the reader.
+		final Phaser unanswered = new Phaser(1);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			final int number = ++lineNumber;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			unanswered.register();
+			running.acquire();
+			final String request = line;
+			CompletableFuture<String> result = CompletableFuture.supplyAsync(
+					new Supplier<String>() {
+						@Override
+						public String get() {
+							try {
+								return answer(number, request,
+										new SearchLimits(timeout,
+												maximumExpanded));
+							} finally {
+								running.release();
+							}
+						}
+					}, executor);
+			result.whenComplete(new BiConsumer<String, Throwable>() {
+				@Override
+				public void accept(String reply, Throwable failure) {
+					out.writeLine(failure == null ? reply : BatchSolve.format(
+							number, "error: " + failure, null));
+					out.flush();
+					unanswered.arriveAndDeregister();
+				}
+			});
+		}
+		unanswered.arriveAndAwaitAdvance();
+		if (Solver.getCache() != null) {
+			System.err.println(Solver.getCache());
+		}
+	}
+
+	/**
+	 * Solves the puzzle in one request.
+	 *
+	 * @param number
+	 *            The line number of the request, to identify it in the
+	 *            results.
+	 * @param request
+	 *            The request: the algorithm, optionally the heuristic, and the
+	 *            start and target states separated by a semicolon.
+	 * @param limits
+	 *            When to give up the search.
+	 * @return the line of results for the request.
+	 */
+	private static String answer(int number, String request,
+			SearchLimits limits) {
+		String[] words = request.split("\\s+");
+		if (words.length < 2 || words.length > 3) {
+			return BatchSolve.format(number,
+					"error: expected an algorithm, an optional heuristic and "
+							+ "a puzzle", null);
+		}
+		String heuristic = words.length == 3 ? words[1] : null;
+		try {
+			// Fails before the puzzle is read if the algorithm isn't valid.
+			new Solver(words[0], heuristic);
+			return BatchSolve.solve(number, words[words.length - 1], null,
+					words[0], heuristic, limits);
+		} catch (RuntimeException e) {
+			return BatchSolve.format(number, "error: " + e.getMessage(), null);
+		}
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for every task if
+	 * the JVM has virtual threads (Java 21 onwards), found by reflection as
+	 * the program is built for older versions, and a pool of daemon platform
+	 * threads otherwise.
+	 *
+	 * @return the executor.
+	 */
+	private static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task);
+					// Searches still running don't keep the program running
+					// once it has been stopped.
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+}
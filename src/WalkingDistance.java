@@ -0,0 +1,363 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Walking Distance heuristic: the fewest moves it takes to get every tile
+ * in to the row it belongs in, plus the fewest to get every tile in to the
+ * column it belongs in, when tiles in the same row (or column) can't be told
+ * apart unless they belong in different rows. Each move of the real puzzle
+ * slides one tile either up or down, which only helps the first count, or left
+ * or right, which only helps the second, so the sum never exceeds the real
+ * number of moves needed. Unlike the Manhattan Distance, it counts the moves
+ * tiles have to make to get out of each other's way.
+ *
+ * All that matters to the row count is how many tiles in each row belong in
+ * each row, and which row the gap is in. These counts are packed in to a code,
+ * and the distance of every code that can be reached from the target's is
+ * found once by a breadth first search, in which the gap swaps places with a
+ * tile in the row above or below. The table depends only on the size of the
+ * board and the row of the gap in the target, so it is kept for the life of
+ * the program and shared by every heuristic that needs it. The columns are
+ * treated the same way.
+ *
+ * Only boards whose codes fit in a single word, up to the 15-puzzle, can be
+ * estimated.
+ *
+ * @author Dale Peters (dmp9@aber.ac.uk)
+ *
+ */
+public class WalkingDistance implements Heuristic {
+	/**
+	 * The tables already worked out, keyed by the number of lines, the cells
+	 * in each line and the line of the gap in the target.
+	 */
+	private static final Map<String, DistanceMap> TABLES = new HashMap<String, DistanceMap>();
+	/**
+	 * The rows of the board.
+	 */
+	private final Lines rows;
+	/**
+	 * The columns of the board.
+	 */
+	private final Lines columns;
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int columnCount;
+
+	/**
+	 * Creates the heuristic for the given target state, working out its
+	 * tables if no earlier heuristic has.
+	 *
+	 * @param target
+	 *            The state the algorithm is trying to find a path to get to.
+	 * @throws IllegalArgumentException
+	 *             if the board is too large for its codes to fit in a word.
+	 */
+	public WalkingDistance(GridState target) {
+		Board board = target.getBoard();
+		rows = new Lines(target, board.getRows(), board.getColumns(),
+				board.getColumns(), 1);
+		columns = new Lines(target, board.getColumns(), board.getRows(), 1,
+				board.getColumns());
+		columnCount = board.getColumns();
+	}
+
+	/**
+	 * Looks up the walking distance of the rows and of the columns.
+	 *
+	 * @param state
+	 *            The state to estimate the cost for.
+	 * @return the estimated cost to get to the target state.
+	 */
+	@Override
+	public int estimate(GridState state) {
+		return rows.table.get(rows.code(state))
+				+ columns.table.get(columns.code(state));
+	}
+
+	/**
+	 * A tile that slides along a row stays in the same row and the gap stays
+	 * in the same column, so only the column counts change, and the other
+	 * way round for a tile that slides along a column. The code before the
+	 * move is the code after it with the tile and the gap swapped back, so
+	 * the estimate is the parent's with the old distance of that one table
+	 * swapped for the new one.
+	 */
+	@Override
+	public int estimateAfterMove(int parentEstimate, GridState state,
+			int from, int to) {
+		Lines crossed = from / columnCount == to / columnCount ? columns
+				: rows;
+		int tile = state.getTile(to);
+		long[][] weights = crossed.weights;
+		long code = crossed.code(state);
+		long parentCode = code - weights[to][tile] + weights[from][tile]
+				- weights[from][0] + weights[to][0];
+		return parentEstimate - crossed.table.get(parentCode)
+				+ crossed.table.get(code);
+	}
+
+	/**
+	 * Returns the table for lines of the given size, working it out if no
+	 * earlier heuristic has. Only one thread works out tables at a time, so
+	 * none is worked out twice.
+	 *
+	 * @param count
+	 *            The number of lines.
+	 * @param length
+	 *            The number of cells in each line.
+	 * @param targetLine
+	 *            The line the gap is in in the target.
+	 * @param countBits
+	 *            The number of bits each count takes up in a code.
+	 * @return the distance of every code that can be reached.
+	 */
+	private static synchronized DistanceMap tableFor(int count, int length,
+			int targetLine, int countBits) {
+		String key = count + "x" + length + "@" + targetLine;
+		DistanceMap table = TABLES.get(key);
+		if (table == null) {
+			table = build(count, length, targetLine, countBits);
+			TABLES.put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Works out the distance of every code that can be reached from the
+	 * target's, by a breadth first search.
+	 *
+	 * @param count
+	 *            The number of lines.
+	 * @param length
+	 *            The number of cells in each line.
+	 * @param targetLine
+	 *            The line the gap is in in the target.
+	 * @param countBits
+	 *            The number of bits each count takes up in a code.
+	 * @return the distance of every code.
+	 */
+	private static DistanceMap build(int count, int length, int targetLine,
+			int countBits) {
+		long countMask = (1L << countBits) - 1;
+		int gapShift = count * count * countBits;
+		long target = (long) targetLine << gapShift;
+		for (int line = 0; line < count; line++) {
+			int tiles = line == targetLine ? length - 1 : length;
+			target += (long) tiles << ((line * count + line) * countBits);
+		}
+
+		DistanceMap table = new DistanceMap();
+		table.put(target, 0);
+		long[] queue = { target };
+		int head = 0;
+		int tail = 1;
+		while (head < tail) {
+			long code = queue[head++];
+			int distance = table.get(code);
+			int gapLine = (int) (code >>> gapShift);
+			for (int line = gapLine - 1; line <= gapLine + 1; line += 2) {
+				if (line < 0 || line >= count) {
+					continue;
+				}
+				// Swaps the gap with a tile from the neighbouring line, from
+				// each group of tiles that has one there.
+				for (int group = 0; group < count; group++) {
+					int shift = (line * count + group) * countBits;
+					if (((code >>> shift) & countMask) == 0) {
+						continue;
+					}
+					long next = code - (1L << shift)
+							+ (1L << ((gapLine * count + group) * countBits))
+							+ ((long) (line - gapLine) << gapShift);
+					if (table.get(next) >= 0) {
+						continue;
+					}
+					table.put(next, distance + 1);
+					if (tail == queue.length) {
+						queue = Arrays.copyOf(queue, tail * 2);
+					}
+					queue[tail++] = next;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * The rows, or the columns, of the board, with what each tile in each
+	 * cell adds to their code and the table of their distances.
+	 */
+	private static final class Lines {
+		/**
+		 * weights[cell][tile] holds what the tile adds to the code when it is
+		 * in the cell: one to the count of tiles in the cell's line that
+		 * belong in the tile's line, or for the gap, the cell's line in the
+		 * bits that hold the line of the gap.
+		 */
+		private final long[][] weights;
+		/**
+		 * The distance of every code.
+		 */
+		private final DistanceMap table;
+
+		/**
+		 * Works out the weights of the lines of the board and finds their
+		 * table.
+		 *
+		 * @param target
+		 *            The target state.
+		 * @param count
+		 *            The number of lines.
+		 * @param length
+		 *            The number of cells in each line.
+		 * @param lineStep
+		 *            The difference between the indices of the first cells of
+		 *            two neighbouring lines.
+		 * @param cellStep
+		 *            The difference between the indices of two neighbouring
+		 *            cells in a line.
+		 * @throws IllegalArgumentException
+		 *             if a code wouldn't fit in a word.
+		 */
+		Lines(GridState target, int count, int length, int lineStep,
+				int cellStep) {
+			int countBits = 32 - Integer.numberOfLeadingZeros(length);
+			int gapBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(count
+					- 1));
+			int gapShift = count * count * countBits;
+			if (gapShift + gapBits >= Long.SIZE) {
+				throw new IllegalArgumentException(
+						"The walking distance heuristic can't estimate a "
+								+ target.getBoard() + " board.");
+			}
+
+			int cellCount = count * length;
+			int[] lineOfCell = new int[cellCount];
+			int[] lineOfTile = new int[cellCount];
+			int targetLine = 0;
+			for (int line = 0; line < count; line++) {
+				for (int position = 0; position < length; position++) {
+					int cell = line * lineStep + position * cellStep;
+					lineOfCell[cell] = line;
+					lineOfTile[target.getTile(cell)] = line;
+					if (target.getTile(cell) == 0) {
+						targetLine = line;
+					}
+				}
+			}
+			weights = new long[cellCount][cellCount];
+			for (int cell = 0; cell < cellCount; cell++) {
+				weights[cell][0] = (long) lineOfCell[cell] << gapShift;
+				for (int tile = 1; tile < cellCount; tile++) {
+					int group = lineOfCell[cell] * count + lineOfTile[tile];
+					weights[cell][tile] = 1L << (group * countBits);
+				}
+			}
+			table = tableFor(count, length, targetLine, countBits);
+		}
+
+		/**
+		 * Works out the code of a state.
+		 *
+		 * @param state
+		 *            The state.
+		 * @return the code.
+		 */
+		long code(GridState state) {
+			long code = 0;
+			for (int cell = 0; cell < weights.length; cell++) {
+				code += weights[cell][state.getTile(cell)];
+			}
+			return code;
+		}
+	}
+
+	/**
+	 * A hash table from codes to their distances, kept in plain arrays so
+	 * that looking a code up doesn't allocate. No code is zero, as every line
+	 * but one holds at least one tile, so zero marks an empty slot.
+	 */
+	private static final class DistanceMap {
+		/**
+		 * The codes, or zero for an empty slot.
+		 */
+		private long[] keys = new long[1 << 10];
+		/**
+		 * The distance of the code in each slot.
+		 */
+		private byte[] distances = new byte[1 << 10];
+		/**
+		 * The number of codes held.
+		 */
+		private int size = 0;
+
+		/**
+		 * Looks up the distance of a code.
+		 *
+		 * @param code
+		 *            The code.
+		 * @return the distance, or -1 if the code isn't held.
+		 */
+		int get(long code) {
+			int mask = keys.length - 1;
+			int slot = hash(code) & mask;
+			while (true) {
+				long key = keys[slot];
+				if (key == code) {
+					return distances[slot];
+				}
+				if (key == 0) {
+					return -1;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		/**
+		 * Adds a code that isn't held yet, growing the table once it is half
+		 * full.
+		 *
+		 * @param code
+		 *            The code.
+		 * @param distance
+		 *            Its distance.
+		 */
+		void put(long code, int distance) {
+			if (2 * (size + 1) > keys.length) {
+				long[] oldKeys = keys;
+				byte[] oldDistances = distances;
+				keys = new long[oldKeys.length * 2];
+				distances = new byte[oldKeys.length * 2];
+				size = 0;
+				for (int slot = 0; slot < oldKeys.length; slot++) {
+					if (oldKeys[slot] != 0) {
+						put(oldKeys[slot], oldDistances[slot]);
+					}
+				}
+			}
+			int mask = keys.length - 1;
+			int slot = hash(code) & mask;
+			while (keys[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = code;
+			distances[slot] = (byte) distance;
+			size++;
+		}
+
+		/**
+		 * Hashes a code the same way as <code>GridState.hashWords</code>.
+		 *
+		 * @param code
+		 *            The code.
+		 * @return the hash code.
+		 */
+		private static int hash(long code) {
+			long hash = code * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}